@@ -0,0 +1,174 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+// Small JMH-style harness for the default-package sources (JMH refuses benchmark classes
+// without a package). Every iteration builds a fresh workload from its setup, then times
+// a fixed number of operations; results are average time per operation.
+// The JSON written by writeJson follows JMH's result layout so existing tooling can read it.
+class BenchHarness {
+    // One prepared instance of the structure under test
+    interface Workload {
+        // runs ops operations and returns a checksum so the JIT cannot drop the work
+        long run(int ops);
+    }
+
+    interface Setup {
+        Workload create(int size);
+    }
+
+    static final class Result {
+        final String benchmark;
+        final String scenario;
+        final int size;
+        final double[] nsPerOp;
+
+        Result(String benchmark, String scenario, int size, double[] nsPerOp) {
+            this.benchmark = benchmark;
+            this.scenario = scenario;
+            this.size = size;
+            this.nsPerOp = nsPerOp;
+        }
+
+        double mean() {
+            double sum = 0;
+            for (double v : nsPerOp) sum += v;
+            return sum / nsPerOp.length;
+        }
+
+        // half-width of a ~99.9% interval, like JMH's scoreError
+        double error() {
+            if (nsPerOp.length < 2) return Double.NaN;
+            double mean = mean();
+            double var = 0;
+            for (double v : nsPerOp) var += (v - mean) * (v - mean);
+            var /= nsPerOp.length - 1;
+            return 3.29 * Math.sqrt(var / nsPerOp.length);
+        }
+    }
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final String filter;
+    private final List<Result> results = new ArrayList<>();
+    private long blackhole;
+
+    BenchHarness(int warmupIterations, int measurementIterations, String filter) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.filter = filter;
+    }
+
+    // ops <= 0 means "one operation per element", e.g. bulk loads
+    void run(String benchmark, String scenario, int[] sizes, int ops, Setup setup) {
+        String name = benchmark + ":" + scenario;
+        if (filter != null && !name.contains(filter)) return;
+        for (int size : sizes) {
+            int n = ops > 0 ? ops : size;
+            for (int i = 0; i < warmupIterations; i++) measure(setup, size, n);
+            double[] samples = new double[measurementIterations];
+            for (int i = 0; i < measurementIterations; i++) samples[i] = measure(setup, size, n);
+            Result r = new Result(benchmark, scenario, size, samples);
+            results.add(r);
+            System.out.printf(Locale.ROOT, "%-28s %-22s %9d %12.1f +- %8.1f ns/op%n",
+                    benchmark, scenario, size, r.mean(), r.error());
+        }
+    }
+
+    private double measure(Setup setup, int size, int ops) {
+        Workload w = setup.create(size);
+        long start = System.nanoTime();
+        blackhole += w.run(ops);
+        return (double) (System.nanoTime() - start) / ops;
+    }
+
+    List<Result> results() {
+        return results;
+    }
+
+    void writeJson(Path file) throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        try (Writer out = Files.newBufferedWriter(file)) {
+            out.write("[\n");
+            for (int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                out.write(String.format(Locale.ROOT,
+                        "  {\"benchmark\": \"%s\", \"mode\": \"avgt\", \"warmupIterations\": %d, \"measurementIterations\": %d,%n"
+                                + "   \"params\": {\"scenario\": \"%s\", \"size\": \"%d\"},%n"
+                                + "   \"primaryMetric\": {\"score\": %.3f, \"scoreError\": %s, \"scoreUnit\": \"ns/op\", \"rawData\": [%s]}}%s%n",
+                        r.benchmark, warmupIterations, measurementIterations, r.scenario, r.size,
+                        r.mean(), error(r), raw(r.nsPerOp), i + 1 < results.size() ? "," : ""));
+            }
+            out.write("]\n");
+        }
+        if (blackhole == 42) System.out.print("");
+    }
+
+    // JSON has no NaN literal; JMH writes it as a string for single-iteration runs
+    private static String error(Result r) {
+        double e = r.error();
+        return Double.isNaN(e) ? "\"NaN\"" : String.format(Locale.ROOT, "%.3f", e);
+    }
+
+    private static String raw(double[] samples) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < samples.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(String.format(Locale.ROOT, "%.3f", samples[i]));
+        }
+        return sb.append(']').toString();
+    }
+
+    // Strings that all share one hashCode: every "Aa"/"BB" combination of the same length
+    static String[] collidingKeys(int count) {
+        int bits = 1;
+        while ((1 << bits) < count) bits++;
+        String[] keys = new String[count];
+        for (int i = 0; i < count; i++) {
+            char[] chars = new char[bits * 2];
+            for (int b = 0; b < bits; b++) {
+                boolean set = (i >> b & 1) != 0;
+                chars[2 * b] = set ? 'B' : 'A';
+                chars[2 * b + 1] = set ? 'B' : 'a';
+            }
+            keys[i] = new String(chars);
+        }
+        return keys;
+    }
+
+    static int[] shuffledRange(int n, long seed) {
+        int[] a = new int[n];
+        for (int i = 0; i < n; i++) a[i] = i;
+        Random rnd = new Random(seed);
+        for (int i = n - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int t = a[i];
+            a[i] = a[j];
+            a[j] = t;
+        }
+        return a;
+    }
+
+    // count draws from ranks 0..n-1 with P(rank r) proportional to 1/(r+1)^exponent
+    static int[] zipfian(int n, double exponent, int count, long seed) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int r = 0; r < n; r++) {
+            sum += 1.0 / Math.pow(r + 1, exponent);
+            cdf[r] = sum;
+        }
+        Random rnd = new Random(seed);
+        int[] draws = new int[count];
+        for (int i = 0; i < count; i++) {
+            int r = Arrays.binarySearch(cdf, rnd.nextDouble() * sum);
+            draws[i] = Math.min(n - 1, r < 0 ? -r - 1 : r);
+        }
+        return draws;
+    }
+}
@@ -0,0 +1,419 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+// Regression suite over every BrightCart structure: hot operations at several sizes plus
+// adversarial inputs (sorted customer ids, hash-colliding keys, all-VIP order streams).
+// Run: mvn -B -Pbench verify            (writes target/benchmarks.json)
+//  or: java -cp target/classes BenchmarkSuite [-o file.json] [-f filter] [-wi n] [-i n] [-quick]
+public class BenchmarkSuite {
+    private static final int OPS = 100_000;
+
+    public static void main(String[] args) throws IOException {
+        Path output = Path.of("benchmarks.json");
+        String filter = null;
+        int warmups = 3;
+        int iterations = 5;
+        boolean quick = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-o": output = Path.of(args[++i]); break;
+                case "-f": filter = args[++i].isEmpty() ? null : args[i]; break;
+                case "-wi": warmups = Integer.parseInt(args[++i]); break;
+                case "-i": iterations = Integer.parseInt(args[++i]); break;
+                case "-quick": quick = true; break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        BenchHarness h = new BenchHarness(warmups, iterations, filter);
+        int[] sizes = quick ? new int[]{1_000} : new int[]{1_000, 10_000, 100_000};
+        int[] quadraticSizes = quick ? new int[]{1_000} : new int[]{1_000, 5_000};
+        int[] sortedSizes = quick ? new int[]{1_000} : new int[]{1_000, 100_000, 1_000_000};
+
+        productLists(h, sizes);
+        cartMaps(h, quick);
+        orderQueue(h, sizes);
+        cartUndoLog(h, sizes);
+        customerBST(h, sizes, quadraticSizes, sortedSizes);
+        customerIndex(h, sizes);
+        recommendationGraph(h, sizes);
+
+        h.writeJson(output);
+        System.out.println("Results written to " + output.toAbsolutePath());
+    }
+
+    // ---- ProductLists ------------------------------------------------------------------
+
+    private static void productLists(BenchHarness h, int[] sizes) {
+        h.run("ProductLists", "bulkLoad", sizes, 0, size -> {
+            product[] products = newProducts(size);
+            return ops -> {
+                ProductLists carousel = new ProductLists();
+                carousel.addAllToEnd(Arrays.asList(products));
+                return carousel.size();
+            };
+        });
+        h.run("ProductLists", "moveToFront", sizes, OPS, size -> {
+            ProductLists carousel = loadedCarousel(size);
+            String[] ids = randomProductIds(size);
+            return ops -> {
+                for (int i = 0; i < ops; i++) carousel.moveToFront(ids[i % ids.length]);
+                return carousel.size();
+            };
+        });
+        h.run("ProductLists", "removeAndReAdd", sizes, OPS, size -> {
+            ProductLists carousel = loadedCarousel(size);
+            String[] ids = randomProductIds(size);
+            return ops -> {
+                for (int i = 0; i < ops; i++) carousel.addToEnd(carousel.removeProduct(ids[i % ids.length]));
+                return carousel.size();
+            };
+        });
+        h.run("ColumnarProductLists", "moveToFront", sizes, OPS, size -> {
+            ColumnarProductLists carousel = new ColumnarProductLists(size);
+            carousel.addAllToEnd(Arrays.asList(newProducts(size)));
+            String[] ids = randomProductIds(size);
+            return ops -> {
+                for (int i = 0; i < ops; i++) carousel.moveToFront(ids[i % ids.length]);
+                return carousel.size();
+            };
+        });
+    }
+
+    private static product[] newProducts(int n) {
+        product[] products = new product[n];
+        for (int i = 0; i < n; i++) {
+            products[i] = new product("P" + i, "Product " + i, 9.99, i % 10 == 0, "General", 10, 0.0f, 4.0f);
+        }
+        return products;
+    }
+
+    private static ProductLists loadedCarousel(int n) {
+        ProductLists carousel = new ProductLists();
+        carousel.addAllToEnd(Arrays.asList(newProducts(n)));
+        return carousel;
+    }
+
+    private static String[] randomProductIds(int n) {
+        Random rnd = new Random(42);
+        String[] ids = new String[4096];
+        for (int i = 0; i < ids.length; i++) ids[i] = "P" + rnd.nextInt(n);
+        return ids;
+    }
+
+    // ---- cart maps: legacy HashTable vs HashMap vs StringIntMap ----------------------------
+
+    private static void cartMaps(BenchHarness h, boolean quick) {
+        int[] sizes = quick ? new int[]{16} : new int[]{16, 1_000, 100_000};
+        // every key shares one hashCode, so chains and probe runs grow with the key count
+        int[] collidingSizes = quick ? new int[]{16} : new int[]{16, 1_024};
+
+        for (String scenario : new String[]{"randomKeys", "collidingKeys"}) {
+            boolean colliding = scenario.equals("collidingKeys");
+            int[] s = colliding ? collidingSizes : sizes;
+            h.run("HashTable", scenario, s, OPS, size -> {
+                String[] keys = keys(size, colliding);
+                int[] trace = trace(size);
+                return ops -> {
+                    HashTable map = new HashTable();
+                    for (int i = 0; i < ops; i++) {
+                        String k = keys[trace[i]];
+                        Integer q = (Integer) map.get(k);
+                        map.put(k, q == null ? 1 : q + 1);
+                    }
+                    return ops;
+                };
+            });
+            h.run("HashMap", scenario, s, OPS, size -> {
+                String[] keys = keys(size, colliding);
+                int[] trace = trace(size);
+                return ops -> {
+                    HashMap<String, Integer> map = new HashMap<>();
+                    for (int i = 0; i < ops; i++) map.merge(keys[trace[i]], 1, Integer::sum);
+                    return map.size();
+                };
+            });
+            h.run("StringIntMap", scenario, s, OPS, size -> {
+                String[] keys = keys(size, colliding);
+                int[] trace = trace(size);
+                return ops -> {
+                    StringIntMap map = new StringIntMap();
+                    for (int i = 0; i < ops; i++) {
+                        String k = keys[trace[i]];
+                        map.put(k, map.getOrDefault(k, 0) + 1);
+                    }
+                    return map.size();
+                };
+            });
+        }
+    }
+
+    private static String[] keys(int n, boolean colliding) {
+        if (colliding) return BenchHarness.collidingKeys(n);
+        String[] keys = new String[n];
+        for (int i = 0; i < n; i++) keys[i] = "P" + i;
+        return keys;
+    }
+
+    private static int[] trace(int n) {
+        Random rnd = new Random(7);
+        int[] trace = new int[OPS];
+        for (int i = 0; i < OPS; i++) trace[i] = rnd.nextInt(n);
+        return trace;
+    }
+
+    // ---- OrderQueue -------------------------------------------------------------------------
+
+    private static void orderQueue(BenchHarness h, int[] sizes) {
+        h.run("OrderQueue", "enqueueStandard", sizes, 0, size -> {
+            Order[] orders = orders(size, 0);
+            return ops -> {
+                OrderQueue q = new OrderQueue();
+                for (Order o : orders) q.enqueue(o);
+                return ops;
+            };
+        });
+        h.run("OrderQueue", "enqueue10pctVip", sizes, 0, size -> {
+            Order[] orders = orders(size, 10);
+            return ops -> {
+                OrderQueue q = new OrderQueue();
+                for (Order o : orders) q.enqueue(o);
+                return ops;
+            };
+        });
+        // adversarial: every order is VIP
+        h.run("OrderQueue", "enqueueAllVip", sizes, 0, size -> {
+            Order[] orders = orders(size, 1);
+            return ops -> {
+                OrderQueue q = new OrderQueue();
+                for (Order o : orders) q.enqueue(o);
+                return ops;
+            };
+        });
+        h.run("OrderQueue", "dequeue", sizes, 0, size -> {
+            OrderQueue q = new OrderQueue();
+            for (Order o : orders(size, 0)) q.enqueue(o);
+            return ops -> {
+                long n = 0;
+                while (q.dequeue() != null) n++;
+                return n;
+            };
+        });
+        for (OrderQueue.Policy policy : new OrderQueue.Policy[]{OrderQueue.Policy.STRICT_PRIORITY, OrderQueue.Policy.AGING}) {
+            h.run("OrderQueue", "enqueueDequeue" + policy, sizes, 0, size -> {
+                Order[] orders = orders(size, 10);
+                return ops -> {
+                    OrderQueue q = new OrderQueue(policy);
+                    for (Order o : orders) q.enqueue(o);
+                    long n = 0;
+                    while (q.dequeue() != null) n++;
+                    return n;
+                };
+            });
+        }
+        // single consumer taking one order per call versus batches
+        for (int batchSize : new int[]{1, 256}) {
+            h.run("ConcurrentOrderQueue", "enqueueDrain" + batchSize, sizes, 0, size -> {
+                Order[] orders = orders(size, 10);
+                ArrayList<Order> batch = new ArrayList<>(batchSize);
+                return ops -> {
+                    ConcurrentOrderQueue q = new ConcurrentOrderQueue();
+                    for (Order o : orders) q.enqueue(o);
+                    long n = 0;
+                    for (int k; (k = q.drainTo(batch, batchSize)) > 0; batch.clear()) n += k;
+                    return n;
+                };
+            });
+        }
+    }
+
+    // every vipEvery-th order is VIP (0 = none)
+    private static Order[] orders(int n, int vipEvery) {
+        Order[] orders = new Order[n];
+        for (int i = 0; i < n; i++) orders[i] = new Order("O" + i, vipEvery > 0 && i % vipEvery == 0);
+        return orders;
+    }
+
+    // ---- CartUndoLog -------------------------------------------------------------------------
+
+    private static void cartUndoLog(BenchHarness h, int[] sizes) {
+        // size edits through a log of the default depth, then undo and redo all it kept
+        h.run("CartUndoLog", "recordUndoRedo", sizes, 0, size -> {
+            String[] ids = new String[size];
+            for (int i = 0; i < size; i++) ids[i] = "P" + (i % 64);
+            StringIntMap cart = new StringIntMap();
+            CartUndoLog log = new CartUndoLog(ShoppingCart.DEFAULT_UNDO_DEPTH);
+            return ops -> {
+                log.clear();
+                for (int i = 0; i < size; i++) log.record(CartAction.Type.UPDATE, ids[i], i, i + 1);
+                return log.undo(cart, size) + log.redo(cart, size);
+            };
+        });
+    }
+
+    // ---- CustomerBST -------------------------------------------------------------------------
+
+    private static void customerBST(BenchHarness h, int[] sizes, int[] quadraticSizes, int[] sortedSizes) {
+        for (CustomerBST.Mode mode : CustomerBST.Mode.values()) {
+            // an unbalanced tree goes quadratic on sorted ids, so PLAIN only gets the small sizes
+            int[] sorted = (mode == CustomerBST.Mode.PLAIN) ? quadraticSizes : sortedSizes;
+            String name = "CustomerBST." + mode;
+            h.run(name, "insertRandomIds", sizes, 0, size -> {
+                CustomerDB[] customers = customers(BenchHarness.shuffledRange(size, 1));
+                return ops -> {
+                    CustomerBST tree = new CustomerBST(mode);
+                    for (CustomerDB c : customers) tree.addCustomer(c);
+                    return ops;
+                };
+            });
+            // adversarial: ids arrive in order, "C000001", "C000002", ...
+            h.run(name, "insertSortedIds", sorted, 0, size -> {
+                CustomerDB[] customers = customers(ascending(size));
+                return ops -> {
+                    CustomerBST tree = new CustomerBST(mode);
+                    for (CustomerDB c : customers) tree.addCustomer(c);
+                    return ops;
+                };
+            });
+            h.run(name, "findAfterSortedInsert", sorted, OPS, size -> {
+                CustomerBST tree = new CustomerBST(mode);
+                for (CustomerDB c : customers(ascending(size))) tree.addCustomer(c);
+                String[] probes = new String[4096];
+                Random rnd = new Random(3);
+                for (int i = 0; i < probes.length; i++) probes[i] = customerId(rnd.nextInt(size));
+                return ops -> {
+                    long found = 0;
+                    for (int i = 0; i < ops; i++) if (tree.findCustomer(probes[i % probes.length]) != null) found++;
+                    return found;
+                };
+            });
+            if (mode == CustomerBST.Mode.PLAIN) continue;
+            // skewed traffic: a few customers get most lookups (Zipf s=0.99)
+            h.run(name, "findZipfian", sizes, OPS, size -> {
+                CustomerBST tree = new CustomerBST(mode);
+                for (CustomerDB c : customers(BenchHarness.shuffledRange(size, 1))) tree.addCustomer(c);
+                int[] customerOfRank = BenchHarness.shuffledRange(size, 5);
+                int[] draws = BenchHarness.zipfian(size, 0.99, 1 << 16, 9);
+                String[] probes = new String[draws.length];
+                for (int i = 0; i < probes.length; i++) probes[i] = customerId(customerOfRank[draws[i]]);
+                return ops -> {
+                    long found = 0;
+                    for (int i = 0; i < ops; i++) if (tree.findCustomer(probes[i & (probes.length - 1)]) != null) found++;
+                    return found;
+                };
+            });
+        }
+    }
+
+    private static void customerIndex(BenchHarness h, int[] sizes) {
+        h.run("CustomerIndex", "recordPurchase", sizes, OPS, size -> {
+            CustomerDB[] customers = indexedCustomers(size);
+            int[] draws = BenchHarness.zipfian(size, 0.99, 1 << 16, 9);
+            return ops -> {
+                for (int i = 0; i < ops; i++) customers[draws[i & (draws.length - 1)]].incrementPurchases();
+                return ops;
+            };
+        });
+        h.run("CustomerIndex", "top10", sizes, OPS, size -> {
+            CustomerIndex index = indexedCustomers(size)[0].index;
+            return ops -> {
+                long n = 0;
+                for (int i = 0; i < ops; i++) n += index.topBuyers(10).size();
+                return n;
+            };
+        });
+        h.run("CustomerIndex", "purchaseRank", sizes, OPS, size -> {
+            CustomerDB[] customers = indexedCustomers(size);
+            CustomerIndex index = customers[0].index;
+            return ops -> {
+                long n = 0;
+                for (int i = 0; i < ops; i++) n += index.purchaseRank(customers[i % customers.length]);
+                return n;
+            };
+        });
+        h.run("CustomerIndex", "findByEmail", sizes, OPS, size -> {
+            CustomerDB[] customers = indexedCustomers(size);
+            CustomerIndex index = customers[0].index;
+            return ops -> {
+                long n = 0;
+                for (int i = 0; i < ops; i++) if (index.findByEmail(customers[i % customers.length].email) != null) n++;
+                return n;
+            };
+        });
+    }
+
+    // Customers with skewed purchase counts, filed in a tree's indexes
+    private static CustomerDB[] indexedCustomers(int size) {
+        CustomerDB[] customers = customers(BenchHarness.shuffledRange(size, 1));
+        CustomerBST tree = new CustomerBST();
+        for (CustomerDB c : customers) tree.addCustomer(c);
+        tree.indexes();
+        for (int r : BenchHarness.zipfian(size, 0.99, size * 4, 13)) customers[r].incrementPurchases();
+        return customers;
+    }
+
+    private static int[] ascending(int size) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        return order;
+    }
+
+    private static CustomerDB[] customers(int[] order) {
+        CustomerDB[] customers = new CustomerDB[order.length];
+        for (int i = 0; i < order.length; i++) {
+            String id = customerId(order[i]);
+            customers[i] = new CustomerDB(id, "Customer " + order[i], id + "@example.com");
+        }
+        return customers;
+    }
+
+    private static String customerId(int i) {
+        return String.format("C%07d", i);
+    }
+
+    // ---- RecommendationGraph ----------------------------------------------------------------
+
+    private static void recommendationGraph(BenchHarness h, int[] sizes) {
+        h.run("RecommendationGraph", "addRelation", sizes, 0, size -> {
+            String[][] edges = randomEdges(size, size * 4);
+            return ops -> {
+                RecommendationGraph g = new RecommendationGraph();
+                for (String[] e : edges) g.addRelation(e[0], e[1]);
+                return edges.length;
+            };
+        });
+        h.run("RecommendationGraph", "recommendTop5", sizes, OPS, size -> {
+            RecommendationGraph g = new RecommendationGraph();
+            for (String[] e : randomEdges(size, size * 4)) g.addRelation(e[0], e[1]);
+            String[] ids = randomProductIds(size);
+            return ops -> {
+                long n = 0;
+                for (int i = 0; i < ops; i++) n += g.recommendProducts(ids[i % ids.length], 5).size();
+                return n;
+            };
+        });
+        // adversarial: one hub product related to everything
+        h.run("RecommendationGraph", "recommendFromHub", sizes, OPS / 100, size -> {
+            RecommendationGraph g = new RecommendationGraph();
+            for (int i = 1; i < size; i++) g.addRelation("P0", "P" + i);
+            return ops -> {
+                long n = 0;
+                for (int i = 0; i < ops; i++) n += g.recommendProducts("P0", 5).size();
+                return n;
+            };
+        });
+    }
+
+    private static String[][] randomEdges(int nodes, int edges) {
+        Random rnd = new Random(11);
+        String[][] result = new String[edges][];
+        for (int i = 0; i < edges; i++) {
+            result[i] = new String[]{"P" + rnd.nextInt(nodes), "P" + rnd.nextInt(nodes)};
+        }
+        return result;
+    }
+}
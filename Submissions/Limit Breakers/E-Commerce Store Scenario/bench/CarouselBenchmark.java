@@ -0,0 +1,68 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+// Per-operation latency of the indexed carousel from 1k to 1M products.
+// Run: javac -encoding UTF-8 -d out src/*.java bench/*.java && java -cp out CarouselBenchmark
+public class CarouselBenchmark {
+    private static final int OPS = 200_000;
+
+    public static void main(String[] args) {
+        int[] sizes = {1_000, 10_000, 100_000, 1_000_000};
+        System.out.printf("%10s %12s %12s %12s %16s%n", "products", "bulk ms", "find ns/op", "move ns/op", "remove+add ns/op");
+        for (int round = 0; round < 2; round++) { // first round is JIT warm-up
+            for (int n : sizes) {
+                ArrayList<product> products = newProducts(n);
+                long start = System.nanoTime();
+                ProductLists carousel = new ProductLists();
+                carousel.addAllToEnd(products);
+                double bulk = (System.nanoTime() - start) / 1e6;
+
+                String[] ids = randomIds(n, 42);
+                double find = timeFind(carousel, ids);
+                double move = timeMove(carousel, ids);
+                double churn = timeRemoveAdd(carousel, ids);
+                if (round == 1) System.out.printf("%10d %12.1f %12.1f %12.1f %16.1f%n", n, bulk, find, move, churn);
+            }
+        }
+    }
+
+    // Every tenth product is featured, so most moves and removals trigger featured-slot repairs
+    private static ArrayList<product> newProducts(int n) {
+        ArrayList<product> products = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            products.add(new product("P" + i, "Product " + i, 9.99, i % 10 == 0, "General", 10, 0.0f, 4.0f));
+        }
+        return products;
+    }
+
+    private static String[] randomIds(int n, long seed) {
+        Random rnd = new Random(seed);
+        String[] ids = new String[OPS];
+        for (int i = 0; i < OPS; i++) ids[i] = "P" + rnd.nextInt(n);
+        return ids;
+    }
+
+    private static double timeFind(ProductLists carousel, String[] ids) {
+        long sink = 0;
+        long start = System.nanoTime();
+        for (String id : ids) sink += carousel.findProduct(id).stockQuantity;
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) System.out.print("");
+        return (double) elapsed / ids.length;
+    }
+
+    private static double timeMove(ProductLists carousel, String[] ids) {
+        long start = System.nanoTime();
+        for (String id : ids) carousel.moveToFront(id);
+        return (double) (System.nanoTime() - start) / ids.length;
+    }
+
+    private static double timeRemoveAdd(ProductLists carousel, String[] ids) {
+        long start = System.nanoTime();
+        for (String id : ids) {
+            product p = carousel.removeProduct(id);
+            carousel.addToEnd(p);
+        }
+        return (double) (System.nanoTime() - start) / ids.length;
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.HashMap;
+import java.util.Random;
+
+// Cart-map workload (read quantity, write quantity + 1) on the legacy chained HashTable,
+// java.util.HashMap<String, Integer> and the open-addressing StringIntMap.
+// Run: java -cp out CartMapBenchmark
+public class CartMapBenchmark {
+    private static final int OPS = 2_000_000;
+
+    public static void main(String[] args) {
+        int[] sizes = {16, 1_000, 100_000};
+        System.out.printf("%8s %16s %16s %18s%n", "keys", "HashTable ns/op", "HashMap ns/op", "StringIntMap ns/op");
+        for (int n : sizes) {
+            String[] keys = new String[n];
+            for (int i = 0; i < n; i++) keys[i] = "P" + i;
+            int[] trace = new int[OPS];
+            Random rnd = new Random(7);
+            for (int i = 0; i < OPS; i++) trace[i] = rnd.nextInt(n);
+
+            // best of several rounds; the early ones double as JIT warm-up
+            double legacy = Double.MAX_VALUE, boxed = Double.MAX_VALUE, primitive = Double.MAX_VALUE;
+            for (int round = 0; round < 7; round++) {
+                legacy = Math.min(legacy, legacy(keys, trace));
+                boxed = Math.min(boxed, boxed(keys, trace));
+                primitive = Math.min(primitive, primitive(keys, trace));
+            }
+            System.out.printf("%8d %16.1f %16.1f %18.1f%n", n, legacy, boxed, primitive);
+        }
+    }
+
+    private static double legacy(String[] keys, int[] trace) {
+        long start = System.nanoTime();
+        HashTable map = new HashTable();
+        for (int k : trace) {
+            Integer q = (Integer) map.get(keys[k]);
+            map.put(keys[k], q == null ? 1 : q + 1);
+        }
+        return (double) (System.nanoTime() - start) / trace.length;
+    }
+
+    private static double boxed(String[] keys, int[] trace) {
+        long start = System.nanoTime();
+        HashMap<String, Integer> map = new HashMap<>();
+        for (int k : trace) {
+            Integer q = map.get(keys[k]);
+            map.put(keys[k], q == null ? 1 : q + 1);
+        }
+        return (double) (System.nanoTime() - start) / trace.length;
+    }
+
+    private static double primitive(String[] keys, int[] trace) {
+        long start = System.nanoTime();
+        StringIntMap map = new StringIntMap();
+        for (int k : trace) {
+            map.put(keys[k], map.getOrDefault(keys[k], 0) + 1);
+        }
+        return (double) (System.nanoTime() - start) / trace.length;
+    }
+}
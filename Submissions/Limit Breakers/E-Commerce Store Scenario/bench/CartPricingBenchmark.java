@@ -0,0 +1,106 @@
+import java.util.HashMap;
+import java.util.Random;
+
+// Keeping a cart's total current while it is edited, for carts of 10, 1,000 and 100,000
+// lines over a 100,000-product catalog. Every edit changes one line's quantity and then
+// reads the total, three ways:
+//   - recompute from the product objects: look up every line's product and sum
+//     productPrice * (1 - discount) in doubles
+//   - reprice from the PriceBook columns: resolve every line into price and quantity
+//     columns and sum them with PriceBook.sumOfProducts (what a cart does after a repricing)
+//   - CartTotals: move the total by the edit's delta, one price lookup
+// Also the summing kernel alone in ns per line; compare with -XX:-UseSuperWord for the
+// scalar loop.
+// Run: java -cp target/classes CartPricingBenchmark [catalogSize]
+public class CartPricingBenchmark {
+    public static void main(String[] args) {
+        int catalogSize = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        Random rnd = new Random(11);
+        ProductLists catalog = new ProductLists();
+        HashMap<String, product> byId = new HashMap<>();
+        String[] ids = new String[catalogSize];
+        for (int i = 0; i < catalogSize; i++) {
+            ids[i] = String.format("P%06d", i);
+            product p = new product(ids[i], "Product " + i, 1 + rnd.nextInt(50_000) / 100.0, false, "General", 100,
+                    rnd.nextInt(4) * 0.05f, 4.0f);
+            catalog.addToEnd(p);
+            byId.put(ids[i], p);
+        }
+        PriceBook book = new PriceBook(catalog);
+
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            boolean report = round == 1;
+            for (int lines : new int[]{10, 1_000, 100_000}) {
+                int edits = Math.max(50, 2_000_000 / lines);
+                StringIntMap cart = new StringIntMap(lines);
+                for (int i = 0; i < lines; i++) cart.put(ids[skewed(rnd, catalogSize)], 1 + rnd.nextInt(20));
+                String[] inCart = new String[cart.size()];
+                for (int s = cart.nextSlot(0), i = 0; s >= 0; s = cart.nextSlot(s + 1)) inCart[i++] = cart.keyAt(s);
+
+                long start = System.nanoTime();
+                double objectTotal = 0;
+                for (int e = 0; e < edits; e++) {
+                    cart.put(inCart[e % inCart.length], 1 + e % 20);
+                    objectTotal = 0;
+                    for (int s = cart.nextSlot(0); s >= 0; s = cart.nextSlot(s + 1)) {
+                        product p = byId.get(cart.keyAt(s));
+                        objectTotal += p.productPrice * (1 - p.discount) * cart.valueAt(s);
+                    }
+                }
+                print("recompute, product objects", cart.size(), edits, start, report);
+
+                start = System.nanoTime();
+                long columnTotal = 0;
+                for (int e = 0; e < edits; e++) {
+                    cart.put(inCart[e % inCart.length], 1 + e % 20);
+                    columnTotal = new CartTotals(book).netCents(cart);
+                }
+                print("reprice, price columns", cart.size(), edits, start, report);
+
+                CartTotals totals = new CartTotals(book);
+                totals.netCents(cart);
+                start = System.nanoTime();
+                long incremental = 0;
+                for (int e = 0; e < edits; e++) {
+                    String id = inCart[e % inCart.length];
+                    int prev = cart.getOrDefault(id, ShoppingCart.NOT_IN_CART);
+                    cart.put(id, 1 + e % 20);
+                    totals.change(id, prev, 1 + e % 20);
+                    incremental = totals.netCents(cart);
+                }
+                print("CartTotals, incremental", cart.size(), edits, start, report);
+                if (incremental != columnTotal || Math.abs(objectTotal * 100 - columnTotal) > 10.0 * cart.size()) { // cents are rounded per unit
+                    throw new IllegalStateException("totals differ: " + objectTotal + " " + columnTotal + " " + incremental);
+                }
+            }
+            kernel(report);
+        }
+    }
+
+    private static void kernel(boolean report) {
+        for (int n : new int[]{4_096, 100_000}) { // in cache, and past it
+            long[] unit = new long[n];
+            long[] qty = new long[n];
+            for (int i = 0; i < n; i++) {
+                unit[i] = 100 + i % 5_000;
+                qty[i] = 1 + i % 20;
+            }
+            int reps = 200_000_000 / n;
+            long sum = 0;
+            long start = System.nanoTime();
+            for (int r = 0; r < reps; r++) sum += PriceBook.sumOfProducts(unit, qty, n);
+            double ns = (System.nanoTime() - start) / (double) reps / n;
+            if (report) System.out.printf("%-28s %,8d lines: %8.3f ns/line (checksum %d)%n", "sumOfProducts kernel", n, ns, sum);
+        }
+    }
+
+    private static void print(String name, int lines, int edits, long start, boolean report) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (report) System.out.printf("%-28s %,8d lines: %,14.0f edits/s%n", name, lines, edits / seconds);
+    }
+
+    private static int skewed(Random rnd, int n) {
+        double u = rnd.nextDouble();
+        return (int) (u * u * n);
+    }
+}
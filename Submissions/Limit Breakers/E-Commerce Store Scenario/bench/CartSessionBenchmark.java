@@ -0,0 +1,119 @@
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// CartSessionManager under many shoppers:
+//   - resident heap per active cart: retained heap after opening one cart per customer,
+//     empty and with a few items each, divided by the number of carts
+//   - cart edits per second with 1, 4, 16 and 64 threads over skewed customers, against
+//     the same carts behind one global lock
+//   - the sweeper's TTL eviction of carts left idle
+// Scaling is bounded by the cores available.
+// Run: java -Xmx4g -cp target/classes CartSessionBenchmark [customers] [secondsPerRun]
+public class CartSessionBenchmark {
+    public static void main(String[] args) throws InterruptedException {
+        int customers = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 2;
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors());
+
+        ConcurrentCustomerDirectory directory = new ConcurrentCustomerDirectory();
+        String[] ids = new String[customers];
+        for (int i = 0; i < customers; i++) {
+            ids[i] = String.format("C%07d", i);
+            directory.addCustomer(new CustomerDB(ids[i], "Customer", ids[i] + "@example.com"));
+        }
+        String[] products = new String[10_000];
+        for (int i = 0; i < products.length; i++) products[i] = String.format("P%05d", i);
+
+        residentMemory(directory, ids, products);
+        for (int threads : new int[]{1, 4, 16, 64}) {
+            edits(directory, ids, products, threads, seconds, false);
+            edits(directory, ids, products, threads, seconds, true);
+        }
+        eviction(directory, ids, products);
+    }
+
+    private static void residentMemory(ConcurrentCustomerDirectory directory, String[] ids, String[] products) {
+        for (int items : new int[]{0, 4}) {
+            long before = usedHeap();
+            CartSessionManager sessions = new CartSessionManager(directory::findCustomer, new ConcurrentOrderQueue(), 1, TimeUnit.HOURS);
+            Random rnd = new Random(5);
+            for (String id : ids) {
+                sessions.useCart(id, cart -> {
+                    for (int i = 0; i < items; i++) cart.addProduct(products[rnd.nextInt(products.length)], 1);
+                });
+            }
+            long bytes = usedHeap() - before;
+            System.out.printf("%,d active carts, %d items each: %,.0f bytes/cart%n",
+                    sessions.activeCarts(), items, bytes / (double) sessions.activeCarts());
+        }
+    }
+
+    private static void edits(ConcurrentCustomerDirectory directory, String[] ids, String[] products,
+                              int threads, double seconds, boolean globalLock) throws InterruptedException {
+        CartSessionManager sessions = new CartSessionManager(directory::findCustomer, new ConcurrentOrderQueue(), 1, TimeUnit.HOURS);
+        Object global = new Object();
+        LongAdder ops = new LongAdder();
+        long deadline = System.nanoTime() + (long) (seconds * 1e9);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            new Thread(() -> {
+                Random rnd = new Random(seed);
+                long n = 0;
+                while ((n & 255) != 0 || System.nanoTime() < deadline) {
+                    String customer = ids[skewed(rnd, ids.length)];
+                    String product = products[rnd.nextInt(products.length)];
+                    int op = rnd.nextInt(8);
+                    if (globalLock) {
+                        synchronized (global) {
+                            edit(sessions, customer, product, op);
+                        }
+                    } else {
+                        edit(sessions, customer, product, op);
+                    }
+                    n++;
+                }
+                ops.add(n);
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        System.out.printf("%-26s %2d threads: %,12.0f edits/s, %,d carts%n",
+                globalLock ? "one global lock" : "per-cart locks", threads, ops.sum() / seconds, sessions.activeCarts());
+    }
+
+    // Mostly adds, some quantity updates, removes and undos; a checkout empties the cart
+    private static void edit(CartSessionManager sessions, String customer, String product, int op) {
+        sessions.useCart(customer, cart -> {
+            if (op < 4) cart.addProduct(product, 1);
+            else if (op == 4) cart.updateQuantity(product, 2);
+            else if (op == 5) cart.removeProduct(product);
+            else if (op == 6) cart.undoActions(1);
+            else cart.enqueueOrder(customer, OrderTier.STANDARD);
+        });
+    }
+
+    private static void eviction(ConcurrentCustomerDirectory directory, String[] ids, String[] products) throws InterruptedException {
+        long ttlMillis = 500;
+        try (CartSessionManager sessions = new CartSessionManager(directory::findCustomer, new ConcurrentOrderQueue(), ttlMillis, TimeUnit.MILLISECONDS).start()) {
+            for (String id : ids) sessions.useCart(id, cart -> cart.addProduct(products[0], 1));
+            long start = System.nanoTime();
+            while (sessions.activeCarts() > 0 && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(30)) Thread.sleep(10);
+            System.out.printf("ttl %d ms: %,d idle carts evicted %.0f ms after the last edit, %,d left%n",
+                    ttlMillis, sessions.evictions(), (System.nanoTime() - start) / 1e6, sessions.activeCarts());
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static int skewed(Random rnd, int n) {
+        double u = rnd.nextDouble();
+        return (int) (u * u * n);
+    }
+}
@@ -0,0 +1,39 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Load throughput of CatalogLoader on a generated catalog (default 1M rows).
+// Run: java -cp out CatalogLoadBenchmark [rows]
+public class CatalogLoadBenchmark {
+    private static final String[] CATEGORIES = {"Kitchen", "Electronics", "Stationery", "Fitness", "Toys", "Garden"};
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Path file = Files.createTempFile("catalog", ".csv");
+        try {
+            writeCatalog(file, rows);
+            System.out.printf("catalog: %d rows, %.1f MB%n", rows, Files.size(file) / 1e6);
+            for (int round = 1; round <= 5; round++) {
+                long start = System.nanoTime();
+                ProductLists carousel = new ProductLists();
+                int loaded = CatalogLoader.loadInto(carousel, file);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("round %d: %d records in %.0f ms -> %.0f records/s%n",
+                        round, loaded, seconds * 1000, loaded / seconds);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    static void writeCatalog(Path file, int rows) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("productId,productName,productPrice,isFeatured,productCategory,stockQuantity,discount,rating\n");
+            for (int i = 0; i < rows; i++) {
+                out.write("P" + i + ",Product " + i + "," + (i % 5000) / 100.0 + "," + (i % 10 == 0) + ","
+                        + CATEGORIES[i % CATEGORIES.length] + "," + (i % 250) + ",0." + (i % 4) + "," + (3 + i % 3) + ".5\n");
+            }
+        }
+    }
+}
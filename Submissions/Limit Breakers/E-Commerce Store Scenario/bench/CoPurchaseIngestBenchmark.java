@@ -0,0 +1,105 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Ingest throughput of processed orders into the co-purchase graph, in orders per second
+// from the first order handed over until flush() sees it in a published snapshot.
+// Baskets are mostly small (geometric, mean ~4) with 0.2% bulk orders of 100-300 products,
+// over skewed product popularity. Compared:
+//   - per order: every pair of every basket straight into addRelation, no cap
+//   - CoPurchaseGraphBuilder at several micro-batch sizes, maxBasket 32
+//   - the same with a reader thread asking snapshot() for recommendations meanwhile; with
+//     fewer cores than threads the reader takes its share of CPU from ingest
+// Run: java -Xmx4g -cp target/classes CoPurchaseIngestBenchmark [orders] [products]
+public class CoPurchaseIngestBenchmark {
+    public static void main(String[] args) throws InterruptedException {
+        int orderCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int products = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors());
+
+        String[] ids = new String[products];
+        for (int i = 0; i < products; i++) ids[i] = String.format("P%07d", i);
+        List<Order> orders = orders(ids, orderCount);
+
+        perOrder(orders);
+        for (int batchSize : new int[]{1, 64, 1024}) builder(orders, ids, batchSize, false);
+        builder(orders, ids, 1024, true);
+    }
+
+    private static void perOrder(List<Order> orders) {
+        RecommendationGraph graph = new RecommendationGraph();
+        long pairs = 0;
+        long start = System.nanoTime();
+        for (Order order : orders) {
+            int lines = order.lineCount();
+            for (int i = 0; i < lines; i++) {
+                for (int j = i + 1; j < lines; j++) graph.addRelation(order.productId(i), order.productId(j));
+            }
+            pairs += (long) lines * (lines - 1) / 2;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-28s %,10.0f orders/s, %,12d pair updates, %,d edges%n",
+                "per order, uncapped", orders.size() / seconds, pairs, graph.edgeCount());
+    }
+
+    private static void builder(List<Order> orders, String[] ids, int batchSize, boolean withReader) throws InterruptedException {
+        RecommendationGraph graph = new RecommendationGraph();
+        AtomicBoolean reading = new AtomicBoolean(withReader);
+        LongAdder reads = new LongAdder();
+        long start;
+        long publishNanos;
+        try (CoPurchaseGraphBuilder builder = new CoPurchaseGraphBuilder(graph, batchSize,
+                CoPurchaseGraphBuilder.DEFAULT_MAX_BASKET, CoPurchaseGraphBuilder.DEFAULT_PUBLISH_MILLIS, 1 << 16).start()) {
+            Thread reader = new Thread(() -> {
+                Random rnd = new Random(3);
+                long n = 0;
+                while (reading.get()) {
+                    builder.snapshot().recommendProducts(ids[skewed(rnd, ids.length)], 10);
+                    n++;
+                }
+                reads.add(n);
+            }, "reader");
+            if (withReader) reader.start();
+
+            start = System.nanoTime();
+            for (Order order : orders) builder.accept(order);
+            builder.flush();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            reading.set(false);
+            if (withReader) reader.join();
+
+            long freezeStart = System.nanoTime();
+            graph.freeze();
+            publishNanos = System.nanoTime() - freezeStart;
+            System.out.printf("%-28s %,10.0f orders/s, %,12d pair updates, %,d edges, %,d batches, %,d baskets sampled, %,.0f snapshot reads/s, publish %.0f ms%n",
+                    "builder, batch " + batchSize + (withReader ? " + reader" : ""), orders.size() / seconds, builder.pairs(), graph.edgeCount(),
+                    builder.batches(), builder.sampledBaskets(), reads.sum() / seconds, publishNanos / 1e6);
+        }
+    }
+
+    private static List<Order> orders(String[] ids, int count) {
+        Random rnd = new Random(42);
+        List<Order> orders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int size = rnd.nextInt(500) == 0 ? 100 + rnd.nextInt(201) : 2 + (int) (-Math.log(1 - rnd.nextDouble()) * 2);
+            // distinct products per basket, as the per-order baseline does not deduplicate
+            String[] basket = new String[size];
+            for (int j = 0; j < size; j++) basket[j] = ids[skewed(rnd, ids.length)];
+            Arrays.sort(basket);
+            int m = 0;
+            for (int j = 0; j < size; j++) if (j == 0 || !basket[j].equals(basket[m - 1])) basket[m++] = basket[j];
+            int[] quantities = new int[m];
+            Arrays.fill(quantities, 1);
+            orders.add(new Order("O" + i, OrderTier.STANDARD, Arrays.copyOf(basket, m), quantities));
+        }
+        return orders;
+    }
+
+    private static int skewed(Random rnd, int n) {
+        double u = rnd.nextDouble();
+        return (int) (u * u * n);
+    }
+}
@@ -0,0 +1,110 @@
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+// Lookup throughput with 1, 4, 16 and 64 reader threads while one background thread keeps
+// adding and deleting profiles. Compares the copy-on-write ConcurrentCustomerDirectory with
+// an AVL CustomerBST behind a read-write lock. Scaling is bounded by the cores available.
+// Run: java -cp target/classes CustomerDirectoryBenchmark [customers] [secondsPerRun]
+public class CustomerDirectoryBenchmark {
+    interface Directory {
+        CustomerDB find(String id);
+
+        void add(CustomerDB c);
+
+        void delete(String id);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int customers = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 2;
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors());
+
+        run("ConcurrentCustomerDirectory", customers, seconds, n -> {
+            ConcurrentCustomerDirectory d = new ConcurrentCustomerDirectory();
+            return new Directory() {
+                public CustomerDB find(String id) { return d.findCustomer(id); }
+                public void add(CustomerDB c) { d.addCustomer(c); }
+                public void delete(String id) { d.deleteCustomer(id); }
+            };
+        });
+        run("CustomerBST+RWLock", customers, seconds, n -> {
+            CustomerBST tree = new CustomerBST(CustomerBST.Mode.AVL);
+            ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+            return new Directory() {
+                public CustomerDB find(String id) {
+                    lock.readLock().lock();
+                    try { return tree.findCustomer(id); } finally { lock.readLock().unlock(); }
+                }
+                public void add(CustomerDB c) {
+                    lock.writeLock().lock();
+                    try { tree.addCustomer(c); } finally { lock.writeLock().unlock(); }
+                }
+                public void delete(String id) {
+                    lock.writeLock().lock();
+                    try { tree.deleteCustomer(id); } finally { lock.writeLock().unlock(); }
+                }
+            };
+        });
+    }
+
+    private static void run(String name, int customers, double seconds, Function<Integer, Directory> factory) throws InterruptedException {
+        String[] ids = new String[customers];
+        for (int i = 0; i < customers; i++) ids[i] = String.format("C%07d", i);
+        double single = 0;
+
+        for (int threads : new int[]{1, 4, 16, 64}) {
+            Directory dir = factory.apply(customers);
+            for (String id : ids) dir.add(new CustomerDB(id, "Customer", id + "@example.com"));
+
+            long deadline = System.nanoTime() + (long) (seconds * 1e9);
+            LongAdder lookups = new LongAdder();
+            LongAdder purchases = new LongAdder();
+            LongAdder writes = new LongAdder();
+            CountDownLatch done = new CountDownLatch(threads + 1);
+
+            // background profile churn: new customers in, old ones out
+            new Thread(() -> {
+                int next = customers;
+                while (System.nanoTime() < deadline) {
+                    String id = String.format("C%07d", next);
+                    dir.add(new CustomerDB(id, "Customer", id + "@example.com"));
+                    dir.delete(String.format("C%07d", next - customers));
+                    next++;
+                    writes.add(2);
+                }
+                done.countDown();
+            }, "profile-writer").start();
+
+            for (int t = 0; t < threads; t++) {
+                long seed = t;
+                new Thread(() -> {
+                    Random rnd = new Random(seed);
+                    long n = 0, bought = 0;
+                    while (true) {
+                        for (int i = 0; i < 1024; i++) {
+                            CustomerDB c = dir.find(ids[rnd.nextInt(customers)]);
+                            if (c != null && (i & 15) == 0) {
+                                c.incrementPurchases();
+                                bought++;
+                            }
+                        }
+                        n += 1024;
+                        if (System.nanoTime() >= deadline) break;
+                    }
+                    lookups.add(n);
+                    purchases.add(bought);
+                    done.countDown();
+                }, "reader-" + t).start();
+            }
+            done.await();
+
+            double perSecond = lookups.sum() / seconds;
+            if (threads == 1) single = perSecond;
+            System.out.printf("%-28s %2d readers: %,12.0f lookups/s (%.2fx of 1 reader), %,9.0f writes/s, %,d purchases%n",
+                    name, threads, perSecond, perSecond / single, writes.sum() / seconds, purchases.sum());
+        }
+    }
+}
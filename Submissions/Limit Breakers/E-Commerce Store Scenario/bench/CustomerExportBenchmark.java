@@ -0,0 +1,47 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+// Streams customers out of a CustomerBST with the range cursor: a full export in pages and
+// a bounded id range. Reports throughput and the bytes the exporting thread allocated, which
+// stay flat however many customers are exported.
+// Run: java -Xmx3g -cp target/classes CustomerExportBenchmark [customers] [pageSize]
+public class CustomerExportBenchmark {
+    public static void main(String[] args) {
+        int customers = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int pageSize = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+
+        long start = System.nanoTime();
+        CustomerBST tree = new CustomerBST(CustomerBST.Mode.AVL);
+        for (int i = 0; i < customers; i++) tree.addCustomer(new CustomerDB(String.format("C%08d", i), "Customer", null));
+        System.out.printf("built %,d customers in %.1f s, height %d%n", customers, (System.nanoTime() - start) / 1e9, tree.height());
+
+        for (int round = 0; round < 3; round++) {
+            ArrayList<CustomerDB> page = new ArrayList<>(pageSize);
+            long allocatedBefore = allocatedBytes();
+            start = System.nanoTime();
+            long exported = 0, pages = 0, checksum = 0;
+            CustomerBST.Cursor cursor = tree.cursor(null, null);
+            while (cursor.nextPage(page, pageSize) > 0) {
+                for (CustomerDB c : page) checksum += c.customerId.length();
+                exported += page.size();
+                pages++;
+                page.clear();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("full export: %,d customers in %,d pages, %.2f s (%.1fM customers/s), %,d bytes allocated [%d]%n",
+                    exported, pages, seconds, exported / seconds / 1e6, allocatedBytes() - allocatedBefore, checksum);
+        }
+
+        String from = String.format("C%08d", customers / 10), to = String.format("C%08d", customers / 5 - 1);
+        long allocatedBefore = allocatedBytes();
+        start = System.nanoTime();
+        long exported = 0;
+        for (CustomerDB c : tree.range(from, to)) exported++;
+        System.out.printf("range %s..%s: %,d customers in %.1f ms, %,d bytes allocated%n",
+                from, to, exported, (System.nanoTime() - start) / 1e6, allocatedBytes() - allocatedBefore);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
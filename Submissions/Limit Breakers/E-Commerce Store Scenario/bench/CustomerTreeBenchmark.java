@@ -0,0 +1,84 @@
+import java.util.Random;
+
+// Inserts 1M sequential customer ids ("C0000000", "C0000001", ...) and reports build time,
+// tree height and random lookup cost per mode. PLAIN degenerates into a list, so it is
+// measured on a smaller prefix. Then replays a Zipfian lookup trace (a few customers get
+// most of the traffic) against the balanced and the self-adjusting trees.
+// Run: java -cp target/classes CustomerTreeBenchmark [customers] [plainCustomers] [zipfLookups]
+public class CustomerTreeBenchmark {
+    public static void main(String[] args) {
+        int customers = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int plainCustomers = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int zipfLookups = args.length > 2 ? Integer.parseInt(args[2]) : 2_000_000;
+        sequentialInserts(customers, plainCustomers);
+        zipfianLookups(customers, zipfLookups);
+    }
+
+    private static void sequentialInserts(int customers, int plainCustomers) {
+
+        for (CustomerBST.Mode mode : CustomerBST.Mode.values()) {
+            int n = (mode == CustomerBST.Mode.PLAIN) ? Math.min(customers, plainCustomers) : customers;
+            CustomerDB[] profiles = profiles(n);
+
+            CustomerBST tree = null;
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                tree = new CustomerBST(mode);
+                for (CustomerDB c : profiles) tree.addCustomer(c);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+
+            Random rnd = new Random(11);
+            String[] probes = new String[1 << 16];
+            for (int i = 0; i < probes.length; i++) probes[i] = profiles[rnd.nextInt(n)].customerId;
+            int lookups = 1_000_000;
+            long found = 0;
+            double findNs = Double.MAX_VALUE;
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < lookups; i++) if (tree.findCustomer(probes[i & (probes.length - 1)]) != null) found++;
+                findNs = Math.min(findNs, (System.nanoTime() - start) / (double) lookups);
+            }
+
+            System.out.printf("%-5s %,d sequential ids: insert %.1f ms (%.0f ns/insert), height %d, find %.0f ns%n",
+                    mode, n, best / 1e6, best / (double) n, tree.height(), findNs);
+        }
+    }
+
+    // Every lookup is followed by a purchase, so purchaseCount tracks how hot a customer is
+    private static void zipfianLookups(int customers, int lookups) {
+        for (double exponent : new double[]{0.8, 0.99, 1.2}) {
+            // popularity rank -> customer, so the hot set is scattered over the id space
+            int[] customerOfRank = BenchHarness.shuffledRange(customers, 5);
+            int[] draws = BenchHarness.zipfian(customers, exponent, lookups, 9);
+            String[] trace = new String[lookups];
+            String[] ids = new String[customers];
+            for (int i = 0; i < customers; i++) ids[i] = String.format("C%07d", i);
+            for (int i = 0; i < lookups; i++) trace[i] = ids[customerOfRank[draws[i]]];
+
+            for (int variant = 0; variant < 3; variant++) {
+                CustomerBST.Mode mode = variant == 0 ? CustomerBST.Mode.AVL : CustomerBST.Mode.SPLAY;
+                int hotPurchases = variant == 2 ? 16 : 0;
+                CustomerBST tree = new CustomerBST(mode, hotPurchases);
+                for (CustomerDB c : profiles(customers)) tree.addCustomer(c);
+
+                long start = System.nanoTime();
+                for (String id : trace) tree.findCustomer(id).incrementPurchases();
+                double ns = (System.nanoTime() - start) / (double) lookups;
+                String name = mode + (hotPurchases > 0 ? " (hot >= " + hotPurchases + ")" : "");
+                System.out.printf("zipf s=%.2f %-18s %,d lookups over %,d customers: %.0f ns/lookup%n",
+                        exponent, name, lookups, customers, ns);
+            }
+        }
+    }
+
+    private static CustomerDB[] profiles(int n) {
+        CustomerDB[] profiles = new CustomerDB[n];
+        for (int i = 0; i < n; i++) {
+            String id = String.format("C%07d", i);
+            profiles[i] = new CustomerDB(id, "Customer " + i, id + "@example.com");
+        }
+        return profiles;
+    }
+}
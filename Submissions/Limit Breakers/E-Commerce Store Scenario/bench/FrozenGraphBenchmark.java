@@ -0,0 +1,137 @@
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+// Heap per edge and full neighbor-scan throughput of the CSR FrozenRecommendationGraph
+// against the original map-of-sets layout (HashMap<String, HashSet<String>>) and the ranked
+// mutable RecommendationGraph, on the same skewed random co-purchase pairs. The map layouts
+// are skipped above mapLimit co-purchases, where they no longer fit in a few GB.
+// Run: java -Xmx4g -cp target/classes FrozenGraphBenchmark [products] [coPurchases] [mapLimit]
+public class FrozenGraphBenchmark {
+    public static void main(String[] args) {
+        int products = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long coPurchases = args.length > 1 ? Long.parseLong(args[1]) : 50_000_000L;
+        long mapLimit = args.length > 2 ? Long.parseLong(args[2]) : 10_000_000L;
+
+        String[] ids = new String[products];
+        for (int i = 0; i < products; i++) ids[i] = String.format("P%07d", i);
+
+        if (coPurchases <= mapLimit) {
+            mapOfSets(ids, coPurchases);
+            rankedGraph(ids, coPurchases);
+        } else {
+            System.out.printf("map layouts skipped above %,d co-purchases%n", mapLimit);
+        }
+        frozen(ids, coPurchases);
+    }
+
+    private static void mapOfSets(String[] ids, long coPurchases) {
+        long baseline = usedHeap();
+        Map<String, Set<String>> adjacency = new HashMap<>();
+        Random rnd = new Random(21);
+        for (long i = 0; i < coPurchases; i++) {
+            String a = ids[skewed(rnd, ids.length)], b = ids[skewed(rnd, ids.length)];
+            if (a.equals(b)) continue;
+            adjacency.computeIfAbsent(a, x -> new HashSet<>()).add(b);
+            adjacency.computeIfAbsent(b, x -> new HashSet<>()).add(a);
+        }
+        long entries = 0;
+        for (Set<String> s : adjacency.values()) entries += s.size();
+        long bytes = usedHeap() - baseline;
+
+        double best = Double.MAX_VALUE;
+        long checksum = 0;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (Set<String> neighbors : adjacency.values()) {
+                for (String n : neighbors) checksum += n.length();
+            }
+            best = Math.min(best, (System.nanoTime() - start) / 1e9);
+        }
+        report("map-of-sets", entries / 2, bytes, entries, best, checksum);
+    }
+
+    private static void rankedGraph(String[] ids, long coPurchases) {
+        long baseline = usedHeap();
+        RecommendationGraph graph = new RecommendationGraph();
+        Random rnd = new Random(21);
+        for (long i = 0; i < coPurchases; i++) graph.addRelation(ids[skewed(rnd, ids.length)], ids[skewed(rnd, ids.length)]);
+        long bytes = usedHeap() - baseline;
+        System.out.printf("%-22s %,d edges, %.1f bytes/edge (ranked, no full-scan API)%n",
+                "RecommendationGraph", graph.edgeCount(), (double) bytes / graph.edgeCount());
+    }
+
+    private static void frozen(String[] ids, long coPurchases) {
+        long baseline = usedHeap();
+        long start = System.nanoTime();
+        FrozenRecommendationGraph.Builder builder = new FrozenRecommendationGraph.Builder();
+        Random rnd = new Random(21);
+        for (long i = 0; i < coPurchases; i++) builder.addCoPurchase(ids[skewed(rnd, ids.length)], ids[skewed(rnd, ids.length)]);
+        FrozenRecommendationGraph graph = builder.build();
+        builder = null;
+        double buildSeconds = (System.nanoTime() - start) / 1e9;
+        long bytes = usedHeap() - baseline;
+        System.out.printf("frozen build: %,d co-purchases in %.1f s%n", coPurchases, buildSeconds);
+
+        double best = Double.MAX_VALUE;
+        long checksum = 0;
+        for (int round = 0; round < 5; round++) {
+            start = System.nanoTime();
+            for (int p = 0; p < graph.productCount(); p++) {
+                for (int i = graph.rowStart(p); i < graph.rowEnd(p); i++) checksum += graph.target(i) + graph.weight(i);
+            }
+            best = Math.min(best, (System.nanoTime() - start) / 1e9);
+        }
+        report("FrozenRecommendation", graph.edgeCount(), bytes, graph.entryCount(), best, checksum);
+
+        String[] probes = new String[1 << 16];
+        for (int i = 0; i < probes.length; i++) probes[i] = ids[rnd.nextInt(ids.length)];
+        double ns = Double.MAX_VALUE;
+        long returned = 0;
+        for (int round = 0; round < 5; round++) {
+            start = System.nanoTime();
+            for (int i = 0; i < 2_000_000; i++) returned += graph.recommendProducts(probes[i & (probes.length - 1)], 10).size();
+            ns = Math.min(ns, (System.nanoTime() - start) / 2e6);
+        }
+        System.out.printf("frozen recommendProducts(random, 10): %.0f ns/call [%d]%n", ns, returned);
+
+        DeltaRecommendationGraph live = new DeltaRecommendationGraph(graph);
+        start = System.nanoTime();
+        for (int i = 0; i < 100_000; i++) live.addRelation(ids[skewed(rnd, ids.length)], ids[skewed(rnd, ids.length)]);
+        System.out.printf("delta: 100,000 co-purchases in %.0f ms, %,d pending entries%n",
+                (System.nanoTime() - start) / 1e6, live.pendingChanges());
+        start = System.nanoTime();
+        for (int i = 0; i < 2_000_000; i++) returned += live.recommendProducts(probes[i & (probes.length - 1)], 10).size();
+        System.out.printf("delta recommendProducts(random, 10): %.0f ns/call [%d]%n", (System.nanoTime() - start) / 2e6, returned);
+        start = System.nanoTime();
+        live.compact();
+        System.out.printf("delta compact: %.0f ms%n", (System.nanoTime() - start) / 1e6);
+
+        // every co-purchase on one hub product: the delta row grows as wide as the hub's row
+        String hub = ids[0];
+        start = System.nanoTime();
+        for (int i = 0; i < 100_000; i++) live.addRelation(hub, ids[rnd.nextInt(ids.length)]);
+        System.out.printf("hub delta: 100,000 co-purchases with %s in %.0f ms%n", hub, (System.nanoTime() - start) / 1e6);
+        start = System.nanoTime();
+        live.compact();
+        System.out.printf("hub compact: %.0f ms%n", (System.nanoTime() - start) / 1e6);
+    }
+
+    private static void report(String name, long edges, long bytes, long scanned, double seconds, long checksum) {
+        System.out.printf("%-22s %,d edges, %.1f bytes/edge, full scan of %,d neighbor entries in %.0f ms (%.0fM entries/s) [%d]%n",
+                name, edges, (double) bytes / edges, scanned, seconds * 1e3, scanned / seconds / 1e6, checksum);
+    }
+
+    private static int skewed(Random rnd, int n) {
+        double u = rnd.nextDouble();
+        return (int) (u * u * n);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) System.gc();
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
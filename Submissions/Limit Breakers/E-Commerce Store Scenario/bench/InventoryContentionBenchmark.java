@@ -0,0 +1,128 @@
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Reservations against one hot product from 1 and 64 threads, in three stock layouts:
+//   - one lock around the stock count and the set of reserved orders
+//   - Inventory with single CAS counters (maxStripes 1)
+//   - Inventory with the product striped over 64 padded cells (markHot)
+// Two workloads:
+//   - steady: every thread reserves one unit and cancels it again, ops/s over a fixed time
+//   - flash sale: stock units, threads reserve 1-3 at a time until sold out; reports the time
+//     to sell out and checks that exactly the stock was sold
+// Scaling is bounded by the cores available.
+// Run: java -cp target/classes InventoryContentionBenchmark [stock] [secondsPerRun]
+public class InventoryContentionBenchmark {
+    private static final String HOT = "P-HOT";
+
+    interface Stock {
+        boolean reserve(Order order);
+
+        boolean release(Order order);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long stock = args.length > 0 ? Long.parseLong(args[0]) : 5_000_000L;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 2;
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors());
+
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            boolean report = round == 1;
+            for (int threads : new int[]{1, 64}) {
+                for (String layout : new String[]{"lock", "CAS counter", "striped x64"}) {
+                    steady(layout, threads, seconds, report);
+                    flashSale(layout, threads, stock, report);
+                }
+            }
+        }
+    }
+
+    private static Stock create(String layout, long units) {
+        if (layout.equals("lock")) return new LockedStock(units);
+        Inventory inventory = new Inventory(layout.equals("CAS counter") ? 1 : 64);
+        inventory.track(HOT, units);
+        if (!layout.equals("CAS counter")) inventory.markHot(HOT);
+        return new Stock() {
+            public boolean reserve(Order order) { return inventory.reserve(order); }
+            public boolean release(Order order) { return inventory.release(order); }
+        };
+    }
+
+    private static void steady(String layout, int threads, double seconds, boolean report) throws InterruptedException {
+        Stock stock = create(layout, Long.MAX_VALUE / 2);
+        LongAdder ops = new LongAdder();
+        long deadline = System.nanoTime() + (long) (seconds * 1e9);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            String[] products = {HOT};
+            int[] one = {1};
+            new Thread(() -> {
+                long n = 0;
+                while ((n & 255) != 0 || System.nanoTime() < deadline) {
+                    Order order = new Order("T", OrderTier.STANDARD, products, one);
+                    if (!stock.reserve(order) || !stock.release(order)) throw new IllegalStateException("lost stock");
+                    n++;
+                }
+                ops.add(n);
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        if (report) System.out.printf("%-12s %2d threads  steady:     %,12.0f reserve+cancel/s%n", layout, threads, ops.sum() / seconds);
+    }
+
+    private static void flashSale(String layout, int threads, long units, boolean report) throws InterruptedException {
+        Stock stock = create(layout, units);
+        AtomicLong sold = new AtomicLong();
+        LongAdder orders = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            new Thread(() -> {
+                long n = 0;
+                int misses = 0;
+                while (misses < 3) { // 1-unit requests keep succeeding until the last unit is gone
+                    int qty = misses > 0 ? 1 : 1 + (int) (n % 3);
+                    if (stock.reserve(new Order(id + "-" + n, OrderTier.STANDARD, new String[]{HOT}, new int[]{qty}))) {
+                        sold.addAndGet(qty);
+                        n++;
+                    } else {
+                        misses++;
+                    }
+                }
+                orders.add(n);
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        if (sold.get() != units) throw new IllegalStateException(layout + " sold " + sold.get() + " of " + units);
+        if (report) System.out.printf("%-12s %2d threads  flash sale: %,12.0f orders/s, %,d units sold out in %.2f s%n",
+                layout, threads, orders.sum() / elapsed, units, elapsed);
+    }
+
+    // Baseline: the count and the set of reserved orders behind one lock
+    private static final class LockedStock implements Stock {
+        private final HashSet<Order> reserved = new HashSet<>();
+        private long available;
+
+        LockedStock(long available) {
+            this.available = available;
+        }
+
+        public synchronized boolean reserve(Order order) {
+            if (available < order.quantity(0)) return false;
+            available -= order.quantity(0);
+            reserved.add(order);
+            return true;
+        }
+
+        public synchronized boolean release(Order order) {
+            if (!reserved.remove(order)) return false;
+            available += order.quantity(0);
+            return true;
+        }
+    }
+}
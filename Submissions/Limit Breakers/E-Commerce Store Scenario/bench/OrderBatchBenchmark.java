@@ -0,0 +1,112 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fulfilment throughput of a pre-filled ConcurrentOrderQueue, in orders per second, drained
+// by OrderWorkerPool in batch mode at batch sizes 1, 16, 256 and 4096, with its one order
+// per call mode as the reference. Per handler call the fulfilment step writes one log
+// line and checks stock once per distinct product, reserving the summed quantity from a
+// shared stock table; orders have 1-4 lines over skewed product popularity.
+// Run: java -cp target/classes OrderBatchBenchmark [orders] [workers]
+public class OrderBatchBenchmark {
+    private static final int PRODUCTS = 10_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int orderCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors());
+
+        String[] products = new String[PRODUCTS];
+        for (int i = 0; i < PRODUCTS; i++) products[i] = String.format("P%05d", i);
+        Order[] orders = new Order[orderCount];
+        Random rnd = new Random(17);
+        for (int i = 0; i < orderCount; i++) {
+            String[] items = new String[1 + rnd.nextInt(4)];
+            for (int j = 0; j < items.length; j++) items[j] = products[skewed(rnd, PRODUCTS)];
+            OrderTier tier = i % 20 == 0 ? OrderTier.EXPRESS : i % 5 == 0 ? OrderTier.VIP : OrderTier.STANDARD;
+            orders[i] = Order.ofItems("O" + i, tier, items);
+        }
+
+        for (int round = 0; round < 2; round++) { // the first round warms up
+            boolean report = round == 1;
+            perOrder(orders, products, workers, report);
+            for (int batchSize : new int[]{1, 16, 256, 4096}) batched(orders, products, workers, batchSize, report);
+        }
+    }
+
+    private static void perOrder(Order[] orders, String[] products, int workers, boolean report) throws InterruptedException {
+        Fulfilment fulfilment = new Fulfilment(products);
+        ConcurrentOrderQueue queue = fill(orders);
+        long start = System.nanoTime();
+        try (OrderWorkerPool pool = new OrderWorkerPool(queue, workers, order -> fulfilment.process(List.of(order))).start()) {
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.MINUTES);
+        }
+        print("per order", orders.length, start, fulfilment, report);
+    }
+
+    private static void batched(Order[] orders, String[] products, int workers, int batchSize, boolean report) throws InterruptedException {
+        Fulfilment fulfilment = new Fulfilment(products);
+        ConcurrentOrderQueue queue = fill(orders);
+        long start = System.nanoTime();
+        try (OrderWorkerPool pool = new OrderWorkerPool(queue, workers, batchSize, fulfilment::process).start()) {
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.MINUTES);
+        }
+        print("batch " + batchSize, orders.length, start, fulfilment, report);
+    }
+
+    private static ConcurrentOrderQueue fill(Order[] orders) {
+        ConcurrentOrderQueue queue = new ConcurrentOrderQueue();
+        for (Order order : orders) queue.enqueue(order);
+        return queue;
+    }
+
+    private static void print(String name, int orders, long start, Fulfilment fulfilment, boolean report) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (fulfilment.orders.sum() != orders) throw new IllegalStateException(name + " processed " + fulfilment.orders.sum() + " of " + orders);
+        if (!report) return;
+        System.out.printf("%-16s %,12.0f orders/s, %,10d handler calls, %,10d stock checks%n",
+                name, orders / seconds, fulfilment.calls.sum(), fulfilment.stockChecks.sum());
+    }
+
+    // Stand-in for the per-call work of a fulfilment step
+    private static final class Fulfilment {
+        final ConcurrentHashMap<String, AtomicInteger> stock = new ConcurrentHashMap<>();
+        final PrintStream log = new PrintStream(OutputStream.nullOutputStream());
+        final LongAdder orders = new LongAdder();
+        final LongAdder calls = new LongAdder();
+        final LongAdder stockChecks = new LongAdder();
+
+        Fulfilment(String[] products) {
+            for (String p : products) stock.put(p, new AtomicInteger(Integer.MAX_VALUE));
+        }
+
+        void process(List<Order> batch) {
+            StringIntMap demand = new StringIntMap(batch.size() * 2);
+            for (Order order : batch) {
+                for (int i = 0; i < order.lineCount(); i++) {
+                    demand.put(order.productId(i), demand.getOrDefault(order.productId(i), 0) + order.quantity(i));
+                }
+            }
+            for (int s = demand.nextSlot(0); s >= 0; s = demand.nextSlot(s + 1)) {
+                stock.get(demand.keyAt(s)).addAndGet(-demand.valueAt(s));
+            }
+            log.println("fulfilled " + batch.size() + " orders " + batch.get(0).orderId + ".." + batch.get(batch.size() - 1).orderId
+                    + ", " + demand.size() + " products");
+            orders.add(batch.size());
+            calls.increment();
+            stockChecks.add(demand.size());
+        }
+    }
+
+    private static int skewed(Random rnd, int n) {
+        double u = rnd.nextDouble();
+        return (int) (u * u * n);
+    }
+}
@@ -0,0 +1,93 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+// Durable order throughput with group commit, and recovery time for a large journal.
+// Run: java -cp target/classes OrderJournalBenchmark [ordersPerRun] [recoveryEntries] [dir]
+public class OrderJournalBenchmark {
+    public static void main(String[] args) throws Exception {
+        int perRun = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int recoveryEntries = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        Path base = args.length > 2 ? Path.of(args[2]) : Files.createTempDirectory("order-journal-bench");
+
+        System.out.println("== sustained durable enqueues (every enqueue waits for its fsync) ==");
+        for (int producers : new int[]{1, 4, 16, 64}) {
+            Path dir = base.resolve("throughput-" + producers);
+            int total = producers == 1 ? Math.min(perRun, 20_000) : perRun;
+            sustained(dir, producers, total / producers);
+            deleteTree(dir);
+        }
+
+        System.out.println("== recovery ==");
+        Path dir = base.resolve("recovery");
+        recovery(dir, recoveryEntries);
+        deleteTree(dir);
+        deleteTree(base);
+    }
+
+    private static void sustained(Path dir, int producers, int perProducer) throws Exception {
+        try (DurableOrderQueue queue = DurableOrderQueue.open(dir, OrderQueue.Policy.STRICT_PRIORITY, OrderQueue.DEFAULT_AGING_LIMIT, Long.MAX_VALUE)) {
+            CountDownLatch done = new CountDownLatch(producers);
+            long start = System.nanoTime();
+            for (int p = 0; p < producers; p++) {
+                int id = p;
+                new Thread(() -> {
+                    for (int i = 0; i < perProducer; i++) queue.enqueue(order("O" + id + "-" + i, i));
+                    done.countDown();
+                }, "checkout-" + p).start();
+            }
+            done.await();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long total = (long) producers * perProducer;
+            long syncs = queue.journalSyncs();
+            System.out.printf("%2d producers: %d orders in %.2f s -> %.0f durable orders/s, %d fsyncs (%.1f records/fsync)%n",
+                    producers, total, seconds, total / seconds, syncs, (double) total / Math.max(1, syncs));
+        }
+    }
+
+    private static void recovery(Path dir, int entries) throws IOException {
+        // 6 enqueues : 4 dequeues, written straight through the journal so building it is fast
+        long start = System.nanoTime();
+        try (OrderJournal journal = new OrderJournal(Files.createDirectories(dir).resolve("journal-0.log"))) {
+            int n = 0;
+            for (int i = 0; n < entries; i++) {
+                if (i % 10 < 6) journal.appendEnqueue(order("O" + i, i));
+                else journal.appendDequeue();
+                n++;
+            }
+        }
+        long bytes = Files.size(dir.resolve("journal-0.log"));
+        System.out.printf("wrote %d-entry journal (%.0f MB) in %.2f s%n", entries, bytes / 1e6, (System.nanoTime() - start) / 1e9);
+
+        start = System.nanoTime();
+        try (DurableOrderQueue queue = DurableOrderQueue.open(dir, OrderQueue.Policy.STRICT_PRIORITY)) {
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("replayed %d entries in %.2f s (%.0f entries/s), %d orders queued%n",
+                    entries, seconds, entries / seconds, queue.size());
+
+            start = System.nanoTime();
+            queue.compact();
+            System.out.printf("compacted to a snapshot in %.2f s%n", (System.nanoTime() - start) / 1e9);
+        }
+
+        start = System.nanoTime();
+        try (DurableOrderQueue queue = DurableOrderQueue.open(dir, OrderQueue.Policy.STRICT_PRIORITY)) {
+            System.out.printf("reopened from snapshot in %.2f s, %d orders queued%n", (System.nanoTime() - start) / 1e9, queue.size());
+        }
+    }
+
+    private static Order order(String id, int i) {
+        OrderTier tier = i % 20 == 0 ? OrderTier.EXPRESS : i % 5 == 0 ? OrderTier.VIP : OrderTier.STANDARD;
+        return Order.ofItems(id, tier, new String[]{"P" + (i % 1000), "P" + (i % 97), "P" + (i % 97)});
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+        }
+    }
+}
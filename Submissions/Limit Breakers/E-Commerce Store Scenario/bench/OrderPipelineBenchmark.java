@@ -0,0 +1,40 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Checkout threads place orders into a ConcurrentOrderQueue while an OrderWorkerPool drains it.
+// Run: java -cp target/classes OrderPipelineBenchmark [producers] [workers] [ordersPerProducer]
+public class OrderPipelineBenchmark {
+    public static void main(String[] args) throws InterruptedException {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int workerCount = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int perProducer = args.length > 2 ? Integer.parseInt(args[2]) : 250_000;
+
+        ConcurrentOrderQueue queue = new ConcurrentOrderQueue();
+        LongAdder handled = new LongAdder();
+        OrderWorkerPool pool = new OrderWorkerPool(queue, workerCount, order -> handled.increment()).start();
+
+        CountDownLatch done = new CountDownLatch(producers);
+        long start = System.nanoTime();
+        for (int p = 0; p < producers; p++) {
+            int id = p;
+            new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    OrderTier tier = i % 20 == 0 ? OrderTier.EXPRESS : i % 5 == 0 ? OrderTier.VIP : OrderTier.STANDARD;
+                    queue.enqueue(new Order("O" + id + "-" + i, tier));
+                }
+                done.countDown();
+            }, "checkout-" + p).start();
+        }
+        done.await();
+        System.out.println("producers finished: " + pool.metrics().summary());
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long total = (long) producers * perProducer;
+        System.out.printf("%d producers, %d workers: %d orders in %.2f s -> %.0f orders/s (handled %d)%n",
+                producers, workerCount, total, seconds, total / seconds, handled.sum());
+        System.out.println("final: " + pool.metrics().summary());
+    }
+}
@@ -0,0 +1,37 @@
+import java.util.Random;
+
+// Enqueue then drain 10M queued orders under each OrderQueue policy.
+// Tier mix is 80% STANDARD, 15% VIP, 5% EXPRESS; Order objects come from a small pool so
+// the queue nodes dominate the heap. Run: java -Xmx3g -cp target/classes OrderSchedulerBenchmark [orders]
+public class OrderSchedulerBenchmark {
+    public static void main(String[] args) {
+        int total = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Order[] pool = new Order[4096];
+        Random rnd = new Random(9);
+        for (int i = 0; i < pool.length; i++) {
+            int roll = rnd.nextInt(100);
+            OrderTier tier = roll < 80 ? OrderTier.STANDARD : roll < 95 ? OrderTier.VIP : OrderTier.EXPRESS;
+            pool[i] = new Order("O" + i, tier);
+        }
+
+        System.out.printf("%-16s %14s %14s%n", "policy", "enqueue/s", "dequeue/s");
+        for (int round = 0; round < 2; round++) { // first round is JIT warm-up
+            for (OrderQueue.Policy policy : OrderQueue.Policy.values()) {
+                OrderQueue queue = new OrderQueue(policy);
+                long start = System.nanoTime();
+                for (int i = 0; i < total; i++) queue.enqueue(pool[i & (pool.length - 1)]);
+                long enqueued = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                long checksum = 0;
+                for (Order o = queue.dequeue(); o != null; o = queue.dequeue()) checksum += o.tier.ordinal();
+                long dequeued = System.nanoTime() - start;
+
+                if (round == 1) {
+                    System.out.printf("%-16s %14.0f %14.0f%n", policy, total / (enqueued / 1e9), total / (dequeued / 1e9));
+                }
+                if (checksum < 0) throw new IllegalStateException();
+            }
+        }
+    }
+}
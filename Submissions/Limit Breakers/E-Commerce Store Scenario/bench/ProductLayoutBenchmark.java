@@ -0,0 +1,57 @@
+import java.util.Iterator;
+
+// Retained heap of ProductLists (object per product + node) versus ColumnarProductLists.
+// Run with a fixed heap so GC is predictable: java -Xms3g -Xmx3g -cp out ProductLayoutBenchmark [products]
+public class ProductLayoutBenchmark {
+    private static final String[] CATEGORIES = {"Kitchen", "Electronics", "Stationery", "Fitness", "Toys", "Garden"};
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        // ids and names are shared by both layouts, so only the structure itself is measured
+        String[] ids = new String[n];
+        String[] names = new String[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = "P" + i;
+            names[i] = "Product " + i;
+        }
+
+        long base = usedHeap();
+        ProductLists objects = new ProductLists();
+        objects.addAllToEnd(products(ids, names));
+        long objectBytes = usedHeap() - base;
+        System.out.printf("ProductLists:         %8.1f MB  (%5.1f bytes/product)%n", objectBytes / 1e6, (double) objectBytes / n);
+        objects = null;
+
+        base = usedHeap();
+        ColumnarProductLists columns = new ColumnarProductLists(n);
+        columns.addAllToEnd(products(ids, names));
+        long columnBytes = usedHeap() - base;
+        System.out.printf("ColumnarProductLists: %8.1f MB  (%5.1f bytes/product)%n", columnBytes / 1e6, (double) columnBytes / n);
+
+        if (columns.size() != n) throw new IllegalStateException("lost products");
+    }
+
+    // Products are created lazily so the temporary objects are garbage once loaded
+    private static Iterable<product> products(String[] ids, String[] names) {
+        return () -> new Iterator<product>() {
+            int i;
+
+            public boolean hasNext() {
+                return i < ids.length;
+            }
+
+            public product next() {
+                int k = i++;
+                return new product(ids[k], names[k], (k % 5000) / 100.0, k % 10 == 0,
+                        CATEGORIES[k % CATEGORIES.length], k % 250, 0.05f, 4.5f);
+            }
+        };
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
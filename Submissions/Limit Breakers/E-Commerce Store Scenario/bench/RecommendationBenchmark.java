@@ -0,0 +1,54 @@
+import java.util.Random;
+
+// Builds a co-purchase graph from random skewed purchase pairs (popular products take part
+// in far more pairs), then measures top-K recommendation latency and heap per edge.
+// Run: java -Xmx4g -cp target/classes RecommendationBenchmark [products] [coPurchases] [k]
+public class RecommendationBenchmark {
+    public static void main(String[] args) {
+        int products = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long coPurchases = args.length > 1 ? Long.parseLong(args[1]) : 10_000_000L;
+        int k = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        String[] ids = new String[products];
+        for (int i = 0; i < products; i++) ids[i] = String.format("P%07d", i);
+        long baseline = usedHeap();
+
+        RecommendationGraph graph = new RecommendationGraph();
+        Random rnd = new Random(21);
+        long start = System.nanoTime();
+        for (long i = 0; i < coPurchases; i++) graph.addRelation(ids[skewed(rnd, products)], ids[skewed(rnd, products)]);
+        double buildSeconds = (System.nanoTime() - start) / 1e9;
+        long heap = usedHeap() - baseline;
+        System.out.printf("%,d co-purchases -> %,d products, %,d distinct edges in %.1f s (%.2fM co-purchases/s), %.1f bytes/edge%n",
+                coPurchases, graph.productCount(), graph.edgeCount(), buildSeconds, coPurchases / buildSeconds / 1e6,
+                (double) heap / graph.edgeCount());
+
+        String[] probes = new String[1 << 16];
+        for (int i = 0; i < probes.length; i++) probes[i] = ids[rnd.nextInt(products)];
+        for (String label : new String[]{"random product", "top product"}) {
+            boolean hub = label.startsWith("top");
+            double best = Double.MAX_VALUE;
+            long returned = 0;
+            for (int round = 0; round < 5; round++) {
+                int lookups = 2_000_000;
+                start = System.nanoTime();
+                for (int i = 0; i < lookups; i++) returned += graph.recommendProducts(hub ? ids[0] : probes[i & (probes.length - 1)], k).size();
+                best = Math.min(best, (System.nanoTime() - start) / (double) lookups);
+            }
+            System.out.printf("recommendProducts(%s, %d): %.0f ns/call [%d]%n", label, k, best, returned);
+        }
+        System.out.println("top product: " + ids[0] + " -> " + graph.recommendProducts(ids[0], k));
+    }
+
+    // Index biased toward 0: P(i) falls off roughly like 1/sqrt(i)
+    private static int skewed(Random rnd, int n) {
+        double u = rnd.nextDouble();
+        return (int) (u * u * n);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) System.gc();
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
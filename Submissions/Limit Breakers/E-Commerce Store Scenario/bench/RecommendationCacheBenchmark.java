@@ -0,0 +1,66 @@
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+// recommendProducts latency and allocation with and without the per-product result cache,
+// under Zipf request mixes over the products (popular products are also the ones bought
+// most): exponent 0.99, a long tail, and 1.2, where a few thousand products take most
+// requests. k is drawn from {5, 10, 20}, and one addRelation per writeEvery requests keeps
+// invalidating hot entries.
+// Run: java -Xmx4g -cp target/classes RecommendationCacheBenchmark [products] [coPurchases] [writeEvery]
+public class RecommendationCacheBenchmark {
+    private static final int[] KS = {5, 10, 20};
+
+    public static void main(String[] args) {
+        int products = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long coPurchases = args.length > 1 ? Long.parseLong(args[1]) : 5_000_000L;
+        int writeEvery = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        String[] ids = new String[products];
+        for (int i = 0; i < products; i++) ids[i] = String.format("P%07d", i);
+        double[] exponents = {0.99, 1.2};
+        int[][] requestMixes = new int[exponents.length][];
+        for (int e = 0; e < exponents.length; e++) requestMixes[e] = BenchHarness.zipfian(products, exponents[e], 1 << 20, 9);
+
+        for (int capacity : new int[]{0, 1_000, 10_000, 100_000}) {
+            RecommendationGraph graph = new RecommendationGraph(capacity);
+            Random rnd = new Random(21);
+            for (long i = 0; i < coPurchases; i++) graph.addRelation(ids[skewed(rnd, products)], ids[skewed(rnd, products)]);
+            for (int e = 0; e < exponents.length; e++) {
+                run(graph, capacity, exponents[e], requestMixes[e], ids, writeEvery, rnd);
+            }
+        }
+    }
+
+    private static void run(RecommendationGraph graph, int capacity, double exponent, int[] requests,
+                            String[] ids, int writeEvery, Random rnd) {
+        int products = ids.length;
+        long hitsBefore = graph.cacheHits(), missesBefore = graph.cacheMisses();
+        long evictionsBefore = graph.cacheEvictions(), invalidationsBefore = graph.cacheInvalidations();
+        double bestNs = Double.MAX_VALUE, bestBytes = Double.MAX_VALUE;
+        long returned = 0;
+        int ops = 4_000_000;
+        for (int round = 0; round < 5; round++) {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < ops; i++) {
+                if (i % writeEvery == 0) graph.addRelation(ids[skewed(rnd, products)], ids[skewed(rnd, products)]);
+                returned += graph.recommendProducts(ids[requests[i & (requests.length - 1)]], KS[i % KS.length]).size();
+            }
+            bestNs = Math.min(bestNs, (System.nanoTime() - start) / (double) ops);
+            bestBytes = Math.min(bestBytes, (allocatedBytes() - allocatedBefore) / (double) ops);
+        }
+        long hits = graph.cacheHits() - hitsBefore, lookups = hits + graph.cacheMisses() - missesBefore;
+        System.out.printf("zipf %.2f, cache %,7d products: %5.0f ns/call, %5.1f bytes allocated/call, hit rate %5.1f%%, %,d evictions, %,d invalidations [%d]%n",
+                exponent, capacity, bestNs, bestBytes, lookups == 0 ? 0 : 100.0 * hits / lookups,
+                graph.cacheEvictions() - evictionsBefore, graph.cacheInvalidations() - invalidationsBefore, returned);
+    }
+
+    private static int skewed(Random rnd, int n) {
+        double u = rnd.nextDouble();
+        return (int) (u * u * n);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+}
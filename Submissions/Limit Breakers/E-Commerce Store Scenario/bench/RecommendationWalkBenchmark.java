@@ -0,0 +1,123 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+// Multi-hop recommendations on skewed random co-purchases:
+//   - recommendTwoHop latency and how many results it finds for products with few relations
+//   - personalized PageRank from one product and from a cart, at several time budgets (median
+//     latency and walks completed of 9 runs, mean recall), with
+//     recall@10 being the overlap with a top-10 from many more walks
+// Walks run on the common fork/join pool, so speed-up is bounded by the cores available.
+// Run: java -Xmx4g -cp target/classes RecommendationWalkBenchmark [products] [coPurchases]
+public class RecommendationWalkBenchmark {
+    private static final int K = 10;
+
+    public static void main(String[] args) {
+        int products = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long coPurchases = args.length > 1 ? Long.parseLong(args[1]) : 10_000_000L;
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors());
+
+        String[] ids = new String[products];
+        for (int i = 0; i < products; i++) ids[i] = String.format("P%07d", i);
+        twoHop(ids, (int) Math.min(coPurchases, 2_000_000L));
+        pageRank(ids, coPurchases);
+    }
+
+    private static void twoHop(String[] ids, int coPurchases) {
+        RecommendationGraph graph = new RecommendationGraph();
+        Random rnd = new Random(17);
+        for (int i = 0; i < coPurchases; i++) graph.addRelation(ids[skewed(rnd, ids.length)], ids[skewed(rnd, ids.length)]);
+
+        // the tail of a skewed catalog: products that were rarely bought at all
+        String[] probes = new String[4096];
+        for (int i = 0; i < probes.length; i++) probes[i] = ids[ids.length - 1 - rnd.nextInt(ids.length / 10)];
+        long direct = 0, widened = 0;
+        for (String p : probes) {
+            direct += graph.recommendProducts(p, K).size();
+            widened += graph.recommendTwoHop(p, K, 20).size();
+        }
+        System.out.printf("tail products: %.1f direct vs %.1f two-hop recommendations per product (k=%d)%n",
+                (double) direct / probes.length, (double) widened / probes.length, K);
+
+        for (int fanout : new int[]{5, 20, 50}) {
+            double best = Double.MAX_VALUE;
+            long returned = 0;
+            for (int round = 0; round < 5; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < 20_000; i++) returned += graph.recommendTwoHop(ids[skewed(rnd, ids.length)], K, fanout).size();
+                best = Math.min(best, (System.nanoTime() - start) / 20_000.0);
+            }
+            System.out.printf("recommendTwoHop(random, %d, fanout %2d): %,8.0f ns/call [%d]%n", K, fanout, best, returned);
+        }
+    }
+
+    private static void pageRank(String[] ids, long coPurchases) {
+        long start = System.nanoTime();
+        FrozenRecommendationGraph.Builder builder = new FrozenRecommendationGraph.Builder();
+        Random rnd = new Random(21);
+        for (long i = 0; i < coPurchases; i++) builder.addCoPurchase(ids[skewed(rnd, ids.length)], ids[skewed(rnd, ids.length)]);
+        FrozenRecommendationGraph graph = builder.build();
+        builder = null;
+        System.out.printf("frozen graph: %,d edges in %.1f s%n", graph.edgeCount(), (System.nanoTime() - start) / 1e9);
+
+        start = System.nanoTime();
+        PersonalizedPageRank ppr = new PersonalizedPageRank(graph);
+        System.out.printf("walk tables: %.0f ms%n", (System.nanoTime() - start) / 1e6);
+
+        String seed = ids[ids.length / 3];
+        ShoppingCart cart = new ShoppingCart();
+        for (int i = 0; i < 5; i++) cart.addProduct(ids[skewed(rnd, ids.length)], 1 + i % 3);
+
+        // warm up, then a reference from far more walks than any budget below allows
+        for (int i = 0; i < 5; i++) ppr.recommend(seed, K, 100_000, 1_000);
+        List<String> seedReference = ppr.recommend(seed, K, 4_000_000, 60_000).products;
+        List<String> cartReference = ppr.recommendForCart(cart, K, 4_000_000, 60_000).products;
+
+        for (long budget : new long[]{1, 5, 20, 100}) {
+            measure("seed", budget, seedReference, () -> ppr.recommend(seed, K, Integer.MAX_VALUE, budget));
+            measure("cart", budget, cartReference, () -> ppr.recommendForCart(cart, K, Integer.MAX_VALUE, budget));
+        }
+
+        for (int walks : new int[]{10_000, 100_000, 1_000_000}) {
+            start = System.nanoTime();
+            PersonalizedPageRank.Result r = ppr.recommend(seed, K, walks, 60_000);
+            double ms = (System.nanoTime() - start) / 1e6;
+            System.out.printf("PPR seed %,9d walks: %7.1f ms (%,.0f walks/s), recall@%d %.1f%n",
+                    walks, ms, walks / ms * 1e3, K, overlap(r.products, seedReference));
+        }
+    }
+
+    private static void measure(String name, long budgetMillis, List<String> reference, Supplier<PersonalizedPageRank.Result> query) {
+        // median of 9 runs
+        double[] ms = new double[9];
+        int[] walks = new int[9];
+        double recall = 0;
+        for (int i = 0; i < ms.length; i++) {
+            long start = System.nanoTime();
+            PersonalizedPageRank.Result r = query.get();
+            ms[i] = (System.nanoTime() - start) / 1e6;
+            walks[i] = r.walks;
+            recall += overlap(r.products, reference) / ms.length;
+        }
+        Arrays.sort(ms);
+        Arrays.sort(walks);
+        System.out.printf("PPR %s budget %3d ms: %6.1f ms, %,9d walks, recall@%d %.2f%n",
+                name, budgetMillis, ms[ms.length / 2], walks[walks.length / 2], K, recall);
+    }
+
+    private static double overlap(List<String> result, List<String> reference) {
+        if (reference.isEmpty()) return 1;
+        Set<String> expected = new HashSet<>(reference);
+        int hits = 0;
+        for (String p : result) if (expected.contains(p)) hits++;
+        return (double) hits / reference.size();
+    }
+
+    private static int skewed(Random rnd, int n) {
+        double u = rnd.nextDouble();
+        return (int) (u * u * n);
+    }
+}
@@ -0,0 +1,177 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// One ShoppingCart per shopping customer, for a process serving many concurrent shoppers.
+// Sessions live in a ConcurrentHashMap keyed by customer id (its bins are locked
+// independently, so there is no map-wide lock), and every cart has its own lock: requests
+// for different customers never wait for each other, and requests for the same customer
+// are applied one at a time. Customers are checked against the customer directory before
+// a cart is created.
+//
+// A cart untouched for ttl is evicted, by evictIdle() or by the sweeper start() runs.
+// Eviction takes the cart's lock, so it never removes a cart in the middle of a request; a
+// request that finds its session just evicted retries with a fresh cart.
+// All carts check out into one order queue, which must be thread-safe (ConcurrentOrderQueue).
+// Given an Inventory, every cart reserves stock from it at checkout; given a PriceBook,
+// every cart keeps its totals priced from it. Both are shared and safe for concurrent carts.
+class CartSessionManager implements AutoCloseable {
+    private static final class Session {
+        final ShoppingCart cart;
+        final ReentrantLock lock = new ReentrantLock();
+        volatile long lastUsed;
+        boolean evicted; // guarded by lock
+
+        Session(ShoppingCart cart, long now) {
+            this.cart = cart;
+            this.lastUsed = now;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Function<String, CustomerDB> customers;
+    private final OrderChannel orderQueue;
+    private final Inventory inventory;   // null: carts do not reserve stock
+    private final PriceBook prices;      // null: carts are not priced
+    private final long ttlNanos;
+    private final int undoDepth;
+    private final LongAdder created = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private ScheduledExecutorService sweeper;
+
+    // customers: lookup used to validate ids, e.g. ConcurrentCustomerDirectory::findCustomer
+    public CartSessionManager(Function<String, CustomerDB> customers, OrderChannel orderQueue, long ttl, TimeUnit unit) {
+        this(customers, orderQueue, ttl, unit, ShoppingCart.DEFAULT_UNDO_DEPTH);
+    }
+
+    public CartSessionManager(Function<String, CustomerDB> customers, OrderChannel orderQueue, long ttl, TimeUnit unit, int undoDepth) {
+        this(customers, orderQueue, null, null, ttl, unit, undoDepth);
+    }
+
+    public CartSessionManager(Function<String, CustomerDB> customers, OrderChannel orderQueue, Inventory inventory,
+                              PriceBook prices, long ttl, TimeUnit unit) {
+        this(customers, orderQueue, inventory, prices, ttl, unit, ShoppingCart.DEFAULT_UNDO_DEPTH);
+    }
+
+    // inventory and prices may be null
+    public CartSessionManager(Function<String, CustomerDB> customers, OrderChannel orderQueue, Inventory inventory,
+                              PriceBook prices, long ttl, TimeUnit unit, int undoDepth) {
+        if (ttl <= 0) throw new IllegalArgumentException("ttl must be positive");
+        this.customers = customers;
+        this.orderQueue = orderQueue;
+        this.inventory = inventory;
+        this.prices = prices;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.undoDepth = undoDepth;
+    }
+
+    // Runs action on the customer's cart under that cart's lock, creating the cart on first
+    // use. Throws IllegalArgumentException for an unknown customer.
+    public <T> T withCart(String customerId, Function<ShoppingCart, T> action) {
+        while (true) {
+            Session session = sessions.get(customerId);
+            if (session == null) session = open(customerId);
+            session.lock.lock();
+            try {
+                if (session.evicted) continue; // lost a race with the sweeper
+                T result = action.apply(session.cart);
+                session.lastUsed = System.nanoTime();
+                return result;
+            } finally {
+                session.lock.unlock();
+            }
+        }
+    }
+
+    public void useCart(String customerId, Consumer<ShoppingCart> action) {
+        withCart(customerId, cart -> {
+            action.accept(cart);
+            return null;
+        });
+    }
+
+    // Places the customer's cart as an order; the session stays for the next basket
+    public boolean checkout(String customerId, String orderId, OrderTier tier) {
+        return withCart(customerId, cart -> cart.enqueueOrder(orderId, tier));
+    }
+
+    // Drops the customer's cart now, e.g. on logout; false if there was none
+    public boolean close(String customerId) {
+        Session session = sessions.get(customerId);
+        return session != null && evict(customerId, session, Long.MAX_VALUE);
+    }
+
+    // Evicts every cart idle for longer than the ttl; returns how many
+    public int evictIdle() {
+        long now = System.nanoTime();
+        int evicted = 0;
+        for (Map.Entry<String, Session> e : sessions.entrySet()) {
+            Session session = e.getValue();
+            if (now - session.lastUsed > ttlNanos && evict(e.getKey(), session, now)) evicted++;
+        }
+        return evicted;
+    }
+
+    // Sweeps for idle carts every quarter ttl on a daemon thread
+    public synchronized CartSessionManager start() {
+        if (sweeper != null) return this;
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cart-session-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, TimeUnit.NANOSECONDS.toMillis(ttlNanos / 4));
+        sweeper.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    public int activeCarts() {
+        return sessions.size();
+    }
+
+    public long cartsCreated() {
+        return created.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (sweeper != null) sweeper.shutdownNow();
+        sweeper = null;
+    }
+
+    private Session open(String customerId) {
+        if (customers.apply(customerId) == null) throw new IllegalArgumentException("Unknown customer: " + customerId);
+        return sessions.computeIfAbsent(customerId, id -> {
+            ShoppingCart cart = new ShoppingCart(orderQueue, undoDepth);
+            cart.setVerbose(false);
+            if (inventory != null) cart.setInventory(inventory);
+            if (prices != null) cart.setPriceBook(prices);
+            created.increment();
+            return new Session(cart, System.nanoTime());
+        });
+    }
+
+    // now = Long.MAX_VALUE evicts regardless of idle time
+    private boolean evict(String customerId, Session session, long now) {
+        if (!session.lock.tryLock()) return false; // in use right now, so not idle
+        try {
+            if (session.evicted || (now != Long.MAX_VALUE && now - session.lastUsed <= ttlNanos)) return false;
+            session.evicted = true;
+            sessions.remove(customerId, session);
+            evictions.increment();
+            return true;
+        } finally {
+            session.lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,316 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Streams product records out of a CSV catalog through a memory-mapped window.
+// One record per line, no quoting:
+//   productId,productName,productPrice,isFeatured,productCategory,stockQuantity,discount,rating
+// A first line starting with "productId" is treated as a header and skipped.
+// Numeric and boolean fields are parsed straight from the mapped bytes; only the id and
+// name become new Strings, categories are deduplicated through a small dictionary.
+class CatalogLoader implements Iterable<product>, AutoCloseable {
+    private static final long WINDOW_SIZE = 64L << 20; // remapped as the reader moves through the file
+    private static final int FIELDS = 8;
+    private static final int MAX_FAST_DIGITS = 15; // mantissa stays exact as a double
+    private static final double[] POWERS_OF_TEN = new double[MAX_FAST_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;  // absolute file offset of the next record
+    private int lineNumber;
+    private boolean iterated;
+
+    private final int[] fieldStart = new int[FIELDS];
+    private final int[] fieldEnd = new int[FIELDS];
+    private byte[] scratch = new byte[256];
+
+    // open-addressed dictionary of category bytes -> shared String
+    private byte[][] categoryKeys = new byte[64][];
+    private String[] categoryValues = new String[64];
+    private int categoryCount;
+
+    public CatalogLoader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        fileSize = channel.size();
+        map(0);
+        if (startsWith("productId")) {
+            position = lineEnd(0) + 1;
+            lineNumber = 1;
+        }
+    }
+
+    // Loads the whole file into the carousel in one pass; returns the number of records read.
+    public static int loadInto(ProductLists carousel, Path file) throws IOException {
+        int before = carousel.size();
+        try (CatalogLoader loader = new CatalogLoader(file)) {
+            carousel.addAllToEnd(loader);
+        }
+        return carousel.size() - before;
+    }
+
+    public static int loadInto(ColumnarProductLists carousel, Path file) throws IOException {
+        int before = carousel.size();
+        try (CatalogLoader loader = new CatalogLoader(file)) {
+            carousel.addAllToEnd(loader);
+        }
+        return carousel.size() - before;
+    }
+
+    @Override
+    public Iterator<product> iterator() {
+        if (iterated) throw new IllegalStateException("Catalog can only be streamed once");
+        iterated = true;
+        return new Iterator<product>() {
+            @Override
+            public boolean hasNext() {
+                skipBlankLines();
+                return position < fileSize;
+            }
+
+            @Override
+            public product next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return readRecord();
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private product readRecord() {
+        long end = lineEnd(position);
+        int from = (int) (position - windowStart);
+        int to = (int) (end - windowStart);
+        if (to > from && window.get(to - 1) == '\r') to--;
+        lineNumber++;
+        splitFields(from, to);
+
+        product p = new product(
+                decode(0),
+                decode(1),
+                parseDouble(2),
+                parseBoolean(3),
+                category(4),
+                parseInt(5),
+                (float) parseDouble(6),
+                (float) parseDouble(7));
+        position = end + 1;
+        return p;
+    }
+
+    private void splitFields(int from, int to) {
+        int field = 0;
+        fieldStart[0] = from;
+        for (int i = from; i < to; i++) {
+            if (window.get(i) == ',') {
+                if (field == FIELDS - 1) throw malformed("too many fields");
+                fieldEnd[field++] = i;
+                fieldStart[field] = i + 1;
+            }
+        }
+        if (field != FIELDS - 1) throw malformed("expected " + FIELDS + " fields");
+        fieldEnd[field] = to;
+    }
+
+    private void skipBlankLines() {
+        while (position < fileSize) {
+            ensureMapped(position, 1);
+            byte b = window.get((int) (position - windowStart));
+            if (b != '\n' && b != '\r') return;
+            if (b == '\n') lineNumber++;
+            position++;
+        }
+    }
+
+    // Absolute offset of the '\n' ending the line at start (or fileSize for the last line).
+    // Remaps the window so the whole line is addressable.
+    private long lineEnd(long start) {
+        ensureMapped(start, 1);
+        while (true) {
+            int limit = window.limit();
+            for (int i = (int) (start - windowStart); i < limit; i++) {
+                if (window.get(i) == '\n') return windowStart + i;
+            }
+            long windowEnd = windowStart + limit;
+            if (windowEnd >= fileSize) return fileSize;
+            if (start == windowStart) throw malformed("line longer than " + WINDOW_SIZE + " bytes");
+            map(start);
+        }
+    }
+
+    private void ensureMapped(long offset, int length) {
+        if (offset < windowStart || offset + length > windowStart + window.limit()) map(offset);
+    }
+
+    private void map(long offset) {
+        try {
+            long length = Math.min(WINDOW_SIZE, fileSize - offset);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            windowStart = offset;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean startsWith(String prefix) {
+        if (window.limit() < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (window.get(i) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private String decode(int field) {
+        int len = copyToScratch(field);
+        return new String(scratch, 0, len, StandardCharsets.UTF_8);
+    }
+
+    private int copyToScratch(int field) {
+        int len = fieldEnd[field] - fieldStart[field];
+        if (len > scratch.length) scratch = new byte[Math.max(len, scratch.length * 2)];
+        window.get(fieldStart[field], scratch, 0, len);
+        return len;
+    }
+
+    private String category(int field) {
+        int len = copyToScratch(field);
+        int h = 0;
+        for (int i = 0; i < len; i++) h = 31 * h + scratch[i];
+        int mask = categoryKeys.length - 1;
+        for (int slot = h & mask; ; slot = (slot + 1) & mask) {
+            byte[] key = categoryKeys[slot];
+            if (key == null) {
+                String value = new String(scratch, 0, len, StandardCharsets.UTF_8);
+                byte[] copy = new byte[len];
+                System.arraycopy(scratch, 0, copy, 0, len);
+                categoryKeys[slot] = copy;
+                categoryValues[slot] = value;
+                if (++categoryCount * 2 > categoryKeys.length) growCategories();
+                return value;
+            }
+            if (sameBytes(key, len)) return categoryValues[slot];
+        }
+    }
+
+    private boolean sameBytes(byte[] key, int len) {
+        if (key.length != len) return false;
+        for (int i = 0; i < len; i++) {
+            if (key[i] != scratch[i]) return false;
+        }
+        return true;
+    }
+
+    private void growCategories() {
+        byte[][] oldKeys = categoryKeys;
+        String[] oldValues = categoryValues;
+        categoryKeys = new byte[oldKeys.length * 2][];
+        categoryValues = new String[oldKeys.length * 2];
+        int mask = categoryKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            byte[] key = oldKeys[i];
+            if (key == null) continue;
+            int h = 0;
+            for (byte b : key) h = 31 * h + b;
+            int slot = h & mask;
+            while (categoryKeys[slot] != null) slot = (slot + 1) & mask;
+            categoryKeys[slot] = key;
+            categoryValues[slot] = oldValues[i];
+        }
+    }
+
+    // "true" / "false" in any case, or 1/0, y/n; anything else is a malformed record
+    private boolean parseBoolean(int field) {
+        int from = fieldStart[field];
+        int len = fieldEnd[field] - from;
+        if (matchesIgnoreCase(from, len, "true")) return true;
+        if (matchesIgnoreCase(from, len, "false")) return false;
+        if (len == 1) {
+            int b = window.get(from) | 0x20; // lower case for letters, digits are unchanged
+            if (b == '1' || b == 'y') return true;
+            if (b == '0' || b == 'n') return false;
+        }
+        throw malformed("bad boolean in field " + field);
+    }
+
+    private boolean matchesIgnoreCase(int from, int len, String word) {
+        if (len != word.length()) return false;
+        for (int i = 0; i < len; i++) {
+            if ((window.get(from + i) | 0x20) != word.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // Optional '-' and at least one digit, within int range
+    private int parseInt(int field) {
+        int from = fieldStart[field];
+        int to = fieldEnd[field];
+        if (from == to) throw malformed("empty numeric field " + field);
+        boolean negative = window.get(from) == '-';
+        if (negative) from++;
+        if (from == to) throw malformed("bad number in field " + field);
+        long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = window.get(i) - '0';
+            if (digit < 0 || digit > 9) throw malformed("bad number in field " + field);
+            value = value * 10 + digit;
+            if (value > limit) throw malformed("number out of range in field " + field);
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    // Plain decimals ("19.99", "-0.5") are parsed in place; anything else (exponents,
+    // more than 15 digits) falls back to Double.parseDouble.
+    private double parseDouble(int field) {
+        int from = fieldStart[field];
+        int to = fieldEnd[field];
+        if (from == to) throw malformed("empty numeric field " + field);
+        boolean negative = window.get(from) == '-';
+        int i = negative ? from + 1 : from;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < to; i++) {
+            byte b = window.get(i);
+            if (b == '.' && scale < 0) {
+                scale = 0;
+            } else if (b >= '0' && b <= '9' && digits < MAX_FAST_DIGITS) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (scale >= 0) scale++;
+            } else {
+                return slowParseDouble(field);
+            }
+        }
+        double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private double slowParseDouble(int field) {
+        try {
+            return Double.parseDouble(decode(field).trim());
+        } catch (NumberFormatException e) {
+            throw malformed("bad number in field " + field);
+        }
+    }
+
+    private IllegalArgumentException malformed(String reason) {
+        return new IllegalArgumentException("Malformed catalog record at line " + lineNumber + ": " + reason);
+    }
+}
@@ -0,0 +1,264 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Pipeline stage that turns processed orders into co-purchase weights. Plug it in wherever
+// orders complete: as ShoppingCart's processed-order listener, or after the handler of an
+// OrderWorkerPool (handler.andThen(builder)). accept() only queues the order.
+//
+// A single builder thread drains the queue in micro-batches of up to batchSize orders,
+// counts every product pair of the batch once (a pair bought together in 40 orders becomes
+// one addRelation(a, b, 40)), and applies the counts to its RecommendationGraph, which no
+// other thread writes. Readers never touch that graph: they use snapshot(), a frozen copy
+// republished at most every publishMillis, so a recommendation read never waits for ingest.
+// Freezing copies the whole graph, so publishes are also spaced at least PUBLISH_SPACING
+// times the last freeze's duration apart, which keeps them under ~10% of the builder's time
+// as the graph grows. flush() and close() publish right away.
+//
+// A basket of m distinct products has m(m-1)/2 pairs. Baskets above maxBasket are reduced
+// to a random sample of maxBasket products, which caps any one order's pairs at
+// maxBasket(maxBasket-1)/2 and keeps bulk orders from flooding the graph.
+//
+// shutdown() stops new orders; the builder keeps draining until no accept() is still in
+// flight and the queue is empty, so an order accept() took is never dropped.
+class CoPurchaseGraphBuilder implements Consumer<Order>, AutoCloseable {
+    static final int DEFAULT_BATCH_SIZE = 256;
+    static final int DEFAULT_MAX_BASKET = 32;
+    static final long DEFAULT_PUBLISH_MILLIS = 1000;
+    private static final long IDLE_POLL_MILLIS = 50;
+    private static final int PUBLISH_SPACING = 10;
+
+    private final RecommendationGraph graph;
+    private final int batchSize;
+    private final int maxBasket;
+    private final long publishNanos;
+    private final BlockingQueue<Order> pending;
+    private final Thread builder;
+    private final SplittableRandom sampler = new SplittableRandom(0xC0FFEE);
+    private volatile boolean stopping;
+    private final AtomicInteger inFlight = new AtomicInteger(); // accept() calls past the stopping check
+
+    private volatile FrozenRecommendationGraph snapshot;
+    private final AtomicLong accepted = new AtomicLong();
+    private long applied;        // orders counted into the graph; builder thread only
+    private long published;      // orders covered by snapshot; guarded by this
+    private long flushRequested; // accepted count a flush() is waiting for; guarded by this
+
+    // Written by the builder thread only
+    private volatile long batches;
+    private volatile long pairs;
+    private volatile long sampledBaskets;
+
+    public CoPurchaseGraphBuilder(RecommendationGraph graph) {
+        this(graph, DEFAULT_BATCH_SIZE, DEFAULT_MAX_BASKET, DEFAULT_PUBLISH_MILLIS, 64 * DEFAULT_BATCH_SIZE);
+    }
+
+    // queueCapacity bounds the orders waiting to be counted; accept() blocks when it is full
+    public CoPurchaseGraphBuilder(RecommendationGraph graph, int batchSize, int maxBasket, long publishMillis, int queueCapacity) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be positive");
+        if (maxBasket < 2) throw new IllegalArgumentException("maxBasket must be at least 2");
+        if (publishMillis < 0) throw new IllegalArgumentException("publishMillis must be >= 0");
+        this.graph = graph;
+        this.batchSize = batchSize;
+        this.maxBasket = maxBasket;
+        this.publishNanos = TimeUnit.MILLISECONDS.toNanos(publishMillis);
+        this.pending = new ArrayBlockingQueue<>(queueCapacity);
+        this.snapshot = graph.freeze();
+        this.builder = new Thread(this::run, "co-purchase-builder");
+        builder.setDaemon(true);
+    }
+
+    public CoPurchaseGraphBuilder start() {
+        builder.start();
+        return this;
+    }
+
+    @Override
+    public void accept(Order order) {
+        // announced before checking stopping: the builder does not finish while this is
+        // nonzero, so an order that passes the check is always drained
+        inFlight.incrementAndGet();
+        try {
+            if (stopping) throw new IllegalStateException("builder is closed");
+            if (order.lineCount() < 2) return; // no pairs
+            pending.put(order);
+            accepted.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while queueing order " + order.orderId, e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    // Latest published graph; read-only, never modified after publishing
+    public FrozenRecommendationGraph snapshot() {
+        return snapshot;
+    }
+
+    // Waits until every order accepted so far is counted and visible in snapshot(). Once it
+    // returns, the builder's graph is also up to date and stays unchanged until more orders
+    // arrive, so a single-threaded caller that is the only producer may read it directly.
+    public void flush() throws InterruptedException {
+        long target = accepted.get();
+        synchronized (this) {
+            flushRequested = Math.max(flushRequested, target);
+            while (published < target) {
+                if (!builder.isAlive()) throw new IllegalStateException("builder is not running");
+                wait(IDLE_POLL_MILLIS);
+            }
+        }
+    }
+
+    public long acceptedOrders() {
+        return accepted.get();
+    }
+
+    public long batches() {
+        return batches;
+    }
+
+    // Pair updates counted, before aggregation within a batch
+    public long pairs() {
+        return pairs;
+    }
+
+    // Orders whose basket exceeded maxBasket and was sampled
+    public long sampledBaskets() {
+        return sampledBaskets;
+    }
+
+    private void run() {
+        List<Order> batch = new ArrayList<>(batchSize);
+        HashMap<String, StringIntMap> counts = new HashMap<>();
+        long lastPublish = System.nanoTime();
+        long freezeNanos = 0;
+        try {
+            while (true) {
+                Order first = pending.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    pending.drainTo(batch, batchSize - 1);
+                    applyBatch(batch, counts);
+                    applied += batch.size();
+                    batch.clear();
+                }
+
+                boolean done = stopping && inFlight.get() == 0 && pending.isEmpty();
+                boolean flushWaiting;
+                synchronized (this) {
+                    if (applied == published) {
+                        if (done) return;
+                        continue;
+                    }
+                    flushWaiting = flushRequested > published && applied >= flushRequested;
+                }
+                long now = System.nanoTime();
+                if (done || flushWaiting || now - lastPublish >= Math.max(publishNanos, PUBLISH_SPACING * freezeNanos)) {
+                    publish();
+                    lastPublish = System.nanoTime();
+                    freezeNanos = lastPublish - now;
+                }
+                if (done) return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void publish() {
+        FrozenRecommendationGraph frozen = graph.freeze();
+        snapshot = frozen;
+        synchronized (this) {
+            published = applied;
+            notifyAll();
+        }
+    }
+
+    // Counts each pair of the batch once, then applies the totals
+    private void applyBatch(List<Order> batch, HashMap<String, StringIntMap> counts) {
+        long batchPairs = 0;
+        for (Order order : batch) {
+            String[] basket = distinctProducts(order);
+            int m = basket.length;
+            if (m > maxBasket) {
+                // partial Fisher-Yates: a uniform sample of maxBasket products
+                for (int i = 0; i < maxBasket; i++) {
+                    int j = i + sampler.nextInt(m - i);
+                    String t = basket[i];
+                    basket[i] = basket[j];
+                    basket[j] = t;
+                }
+                m = maxBasket;
+                Arrays.sort(basket, 0, m);
+                sampledBaskets++;
+            }
+            // sorted, so basket[i] < basket[j] and every pair has one key
+            for (int i = 0; i < m; i++) {
+                StringIntMap row = counts.get(basket[i]);
+                if (row == null) {
+                    row = new StringIntMap(8);
+                    counts.put(basket[i], row);
+                }
+                for (int j = i + 1; j < m; j++) row.put(basket[j], row.getOrDefault(basket[j], 0) + 1);
+            }
+            batchPairs += (long) m * (m - 1) / 2;
+        }
+
+        for (Map.Entry<String, StringIntMap> e : counts.entrySet()) {
+            StringIntMap row = e.getValue();
+            for (int s = row.nextSlot(0); s >= 0; s = row.nextSlot(s + 1)) {
+                graph.addRelation(e.getKey(), row.keyAt(s), row.valueAt(s));
+            }
+        }
+        counts.clear();
+        pairs += batchPairs;
+        batches++;
+    }
+
+    // Sorted product ids of the order, repeats removed
+    private static String[] distinctProducts(Order order) {
+        String[] basket = new String[order.lineCount()];
+        for (int i = 0; i < basket.length; i++) basket[i] = order.productId(i);
+        Arrays.sort(basket);
+        int m = 0;
+        for (int i = 0; i < basket.length; i++) {
+            if (m == 0 || !basket[i].equals(basket[m - 1])) basket[m++] = basket[i];
+        }
+        return m == basket.length ? basket : Arrays.copyOf(basket, m);
+    }
+
+    // Stops accepting orders; the builder counts and publishes what is queued, then exits.
+    // Does not wait.
+    public void shutdown() {
+        stopping = true;
+    }
+
+    // Waits up to timeout for the builder to exit after shutdown(); true if it has
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        unit.timedJoin(builder, timeout);
+        return !builder.isAlive();
+    }
+
+    // Shuts down and waits for the builder to count and publish everything queued. An
+    // interrupt while waiting returns at once, leaving the builder to finish on its own,
+    // and is passed on to the caller.
+    @Override
+    public void close() {
+        shutdown();
+        try {
+            builder.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
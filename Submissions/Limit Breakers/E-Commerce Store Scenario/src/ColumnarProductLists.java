@@ -0,0 +1,311 @@
+import java.util.Arrays;
+
+// Columnar (struct-of-arrays) carousel with the same operations as ProductLists.
+// Each product is a row index into parallel primitive arrays; prev/next and the featured
+// chain are int links (-1 = none) instead of node objects, and categories are dictionary
+// encoded. Freed rows are recycled through a free list threaded over next[].
+public class ColumnarProductLists {
+    private static final int FEATURED_SLOTS = 3;
+    private static final int NIL = -1;
+
+    private String[] ids;
+    private String[] names;
+    private double[] price;
+    private int[] stock;
+    private float[] discount;
+    private float[] rating;
+    private boolean[] featured;
+    private int[] category;       // code into categoryNames
+    private int[] next;
+    private int[] prev;
+    private int[] nextFeatured;
+    private int[] prevFeatured;
+
+    private String[] categoryNames = new String[16];
+    private final StringIntMap categoryCodes = new StringIntMap();
+    private final StringIntMap index;   // productId -> row
+
+    private int head = NIL, tail = NIL;
+    private int featuredHead = NIL, featuredTail = NIL;
+    private int featuredCount;
+    private int size;
+    private int rowsUsed;       // high-water mark of allocated rows
+    private int freeRows = NIL; // recycled rows, linked through next[]
+
+    public ColumnarProductLists(int expectedSize) {
+        int capacity = Math.max(16, expectedSize);
+        index = new StringIntMap(capacity);
+        ids = new String[capacity];
+        names = new String[capacity];
+        price = new double[capacity];
+        stock = new int[capacity];
+        discount = new float[capacity];
+        rating = new float[capacity];
+        featured = new boolean[capacity];
+        category = new int[capacity];
+        next = new int[capacity];
+        prev = new int[capacity];
+        nextFeatured = new int[capacity];
+        prevFeatured = new int[capacity];
+    }
+
+    public ColumnarProductLists() {
+        this(16);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int featuredCount() {
+        return featuredCount;
+    }
+
+    public void addToFront(product obj) {
+        linkFirst(newRow(obj));
+        maintainFeaturedConstraint();
+    }
+
+    public void addToEnd(product obj) {
+        linkLast(newRow(obj));
+        maintainFeaturedConstraint();
+    }
+
+    // Bulk load: links every product at the end and restores the featured slots once
+    public void addAllToEnd(Iterable<product> products) {
+        for (product obj : products) {
+            linkLast(newRow(obj));
+        }
+        maintainFeaturedConstraint();
+    }
+
+    // Materializes the row as a product object; the columns stay the source of truth
+    public product findProduct(String productId) {
+        int row = index.getOrDefault(productId, NIL);
+        return (row != NIL) ? toProduct(row) : null;
+    }
+
+    public double priceOf(String productId) {
+        return price[rowOf(productId)];
+    }
+
+    public int stockOf(String productId) {
+        return stock[rowOf(productId)];
+    }
+
+    public float discountOf(String productId) {
+        return discount[rowOf(productId)];
+    }
+
+    public String categoryOf(String productId) {
+        return categoryNames[category[rowOf(productId)]];
+    }
+
+    public product removeProduct(String productId) {
+        int row = index.getOrDefault(productId, NIL);
+        if (row == NIL) return null;
+        product removed = toProduct(row);
+        index.remove(productId);
+        unlink(row);
+        freeRow(row);
+        maintainFeaturedConstraint();
+        return removed;
+    }
+
+    public void moveToFront(String productId) {
+        int row = index.getOrDefault(productId, NIL);
+        if (row == NIL || row == head) return;
+        unlink(row);
+        linkFirst(row);
+        maintainFeaturedConstraint();
+    }
+
+    public String validateCarousel() {
+        int slow = head;
+        int fast = head;
+
+        while (fast != NIL && next[fast] != NIL) {
+            slow = next[slow];
+            fast = next[next[fast]];
+
+            if (slow == fast) {
+                repairCycle(slow);
+                return "REPAIRED";
+            }
+        }
+        return "NO CYCLE FOUND";
+    }
+
+    private void repairCycle(int cycleStartPoint) {
+        int start = head;
+        int loopNode = cycleStartPoint;
+        while (start != loopNode) {
+            start = next[start];
+            loopNode = next[loopNode];
+        }
+        int last = start;
+        while (next[last] != start) {
+            last = next[last];
+        }
+        next[last] = NIL;
+        tail = last;
+    }
+
+    public void displayProduct() {
+        for (int row = head; row != NIL; row = next[row]) {
+            System.out.println(toProduct(row));
+        }
+    }
+
+    private int rowOf(String productId) {
+        int row = index.getOrDefault(productId, NIL);
+        if (row == NIL) throw new IllegalArgumentException("Unknown product id: " + productId);
+        return row;
+    }
+
+    private product toProduct(int row) {
+        return new product(ids[row], names[row], price[row], featured[row],
+                categoryNames[category[row]], stock[row], discount[row], rating[row]);
+    }
+
+    private int newRow(product obj) {
+        if (index.containsKey(obj.productId)) {
+            throw new IllegalArgumentException("Duplicate product id: " + obj.productId);
+        }
+        int row;
+        if (freeRows != NIL) {
+            row = freeRows;
+            freeRows = next[row];
+        } else {
+            if (rowsUsed == ids.length) grow();
+            row = rowsUsed++;
+        }
+        ids[row] = obj.productId;
+        names[row] = obj.productName;
+        price[row] = obj.productPrice;
+        stock[row] = obj.stockQuantity;
+        discount[row] = obj.discount;
+        rating[row] = obj.rating;
+        featured[row] = obj.isFeatured;
+        category[row] = categoryCode(obj.productCategory);
+        next[row] = prev[row] = NIL;
+        nextFeatured[row] = prevFeatured[row] = NIL;
+        index.put(obj.productId, row);
+        return row;
+    }
+
+    private void freeRow(int row) {
+        ids[row] = null;
+        names[row] = null;
+        next[row] = freeRows;
+        freeRows = row;
+    }
+
+    private int categoryCode(String name) {
+        int code = categoryCodes.getOrDefault(name, NIL);
+        if (code != NIL) return code;
+        code = categoryCodes.size();
+        if (code == categoryNames.length) categoryNames = Arrays.copyOf(categoryNames, code * 2);
+        categoryNames[code] = name;
+        categoryCodes.put(name, code);
+        return code;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        names = Arrays.copyOf(names, capacity);
+        price = Arrays.copyOf(price, capacity);
+        stock = Arrays.copyOf(stock, capacity);
+        discount = Arrays.copyOf(discount, capacity);
+        rating = Arrays.copyOf(rating, capacity);
+        featured = Arrays.copyOf(featured, capacity);
+        category = Arrays.copyOf(category, capacity);
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        nextFeatured = Arrays.copyOf(nextFeatured, capacity);
+        prevFeatured = Arrays.copyOf(prevFeatured, capacity);
+    }
+
+    private void linkFirst(int row) {
+        next[row] = head;
+        prev[row] = NIL;
+        if (head == NIL) tail = row;
+        else prev[head] = row;
+        head = row;
+        size++;
+
+        if (featured[row]) {
+            nextFeatured[row] = featuredHead;
+            prevFeatured[row] = NIL;
+            if (featuredHead == NIL) featuredTail = row;
+            else prevFeatured[featuredHead] = row;
+            featuredHead = row;
+            featuredCount++;
+        }
+    }
+
+    private void linkLast(int row) {
+        prev[row] = tail;
+        next[row] = NIL;
+        if (tail == NIL) head = row;
+        else next[tail] = row;
+        tail = row;
+        size++;
+
+        if (featured[row]) {
+            prevFeatured[row] = featuredTail;
+            nextFeatured[row] = NIL;
+            if (featuredTail == NIL) featuredHead = row;
+            else nextFeatured[featuredTail] = row;
+            featuredTail = row;
+            featuredCount++;
+        }
+    }
+
+    private void unlink(int row) {
+        if (prev[row] != NIL) next[prev[row]] = next[row];
+        else head = next[row];
+        if (next[row] != NIL) prev[next[row]] = prev[row];
+        else tail = prev[row];
+        prev[row] = next[row] = NIL;
+        size--;
+
+        if (featured[row]) {
+            if (prevFeatured[row] != NIL) nextFeatured[prevFeatured[row]] = nextFeatured[row];
+            else featuredHead = nextFeatured[row];
+            if (nextFeatured[row] != NIL) prevFeatured[nextFeatured[row]] = prevFeatured[row];
+            else featuredTail = prevFeatured[row];
+            prevFeatured[row] = nextFeatured[row] = NIL;
+            featuredCount--;
+        }
+    }
+
+    // Same rule as ProductLists: slot i must hold the i-th row of the featured chain
+    private void maintainFeaturedConstraint() {
+        int slots = Math.min(FEATURED_SLOTS, featuredCount);
+        int row = head;
+        int expected = featuredHead;
+
+        for (int count = 0; count < slots; count++) {
+            if (row != expected) {
+                moveFeaturedBefore(expected, row);
+                row = expected;
+            }
+            row = next[row];
+            expected = nextFeatured[expected];
+        }
+    }
+
+    private void moveFeaturedBefore(int row, int target) {
+        next[prev[row]] = next[row];
+        if (next[row] != NIL) prev[next[row]] = prev[row];
+        else tail = prev[row];
+
+        prev[row] = prev[target];
+        next[row] = target;
+        if (prev[target] != NIL) next[prev[target]] = row;
+        else head = row;
+        prev[target] = row;
+    }
+}
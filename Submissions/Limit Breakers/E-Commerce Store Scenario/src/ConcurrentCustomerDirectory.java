@@ -0,0 +1,162 @@
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Customer index for many request threads reading while a background job adds and deletes
+// profiles. The tree is a persistent AVL tree: nodes are immutable, and an update copies
+// only the O(log n) nodes on the path it changes, then publishes the new root with one
+// volatile write. A lookup reads the root once and walks a tree that can never change
+// under it, so findCustomer is wait-free and takes no lock. Writers serialize on a lock,
+// which suits a write rate far below the read rate.
+// Profiles themselves are shared, not copied; CustomerDB.incrementPurchases is atomic.
+class ConcurrentCustomerDirectory {
+    private static final class Node {
+        final CustomerDB data;
+        final Node left, right;
+        final int height;
+
+        Node(CustomerDB data, Node left, Node right) {
+            this.data = data;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max(height(left), height(right));
+        }
+    }
+
+    private volatile Node root;
+    private volatile int size;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // Wait-free: one volatile read, then a walk over immutable nodes
+    public CustomerDB findCustomer(String id) {
+        Node node = root;
+        while (node != null) {
+            int cmp = id.compareTo(node.data.customerId);
+            if (cmp == 0) return node.data;
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    // Returns false (and changes nothing) if the id is already present
+    public boolean addCustomer(CustomerDB profile) {
+        writeLock.lock();
+        try {
+            Node updated = insert(root, profile);
+            if (updated == root) return false;
+            size++;
+            root = updated;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public boolean deleteCustomer(String id) {
+        writeLock.lock();
+        try {
+            Node updated = delete(root, id);
+            if (updated == root) return false;
+            size--;
+            root = updated;
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Counts a purchase without any tree update; null if the customer is unknown
+    public CustomerDB recordPurchase(String id) {
+        CustomerDB customer = findCustomer(id);
+        if (customer != null) customer.incrementPurchases();
+        return customer;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int height() {
+        return height(root);
+    }
+
+    // In id order over a consistent snapshot of the directory; writers are not blocked
+    public void forEach(Consumer<CustomerDB> action) {
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        Node node = root;
+        while (node != null || !stack.isEmpty()) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+            node = stack.pop();
+            action.accept(node.data);
+            node = node.right;
+        }
+    }
+
+    public void display() {
+        System.out.println("\nCustomer Directory (by ID):");
+        forEach(c -> System.out.println("  " + c));
+    }
+
+    // Path copying: recursion depth is the tree height, at most ~1.44 log2(n)
+    private static Node insert(Node node, CustomerDB profile) {
+        if (node == null) return new Node(profile, null, null);
+        int cmp = profile.customerId.compareTo(node.data.customerId);
+        if (cmp == 0) return node;
+        if (cmp < 0) {
+            Node left = insert(node.left, profile);
+            return left == node.left ? node : balance(node.data, left, node.right);
+        }
+        Node right = insert(node.right, profile);
+        return right == node.right ? node : balance(node.data, node.left, right);
+    }
+
+    private static Node delete(Node node, String id) {
+        if (node == null) return null;
+        int cmp = id.compareTo(node.data.customerId);
+        if (cmp < 0) {
+            Node left = delete(node.left, id);
+            return left == node.left ? node : balance(node.data, left, node.right);
+        }
+        if (cmp > 0) {
+            Node right = delete(node.right, id);
+            return right == node.right ? node : balance(node.data, node.left, right);
+        }
+        if (node.left == null) return node.right;
+        if (node.right == null) return node.left;
+        Node min = node.right;
+        while (min.left != null) min = min.left;
+        return balance(min.data, node.left, deleteMin(node.right));
+    }
+
+    private static Node deleteMin(Node node) {
+        if (node.left == null) return node.right;
+        return balance(node.data, deleteMin(node.left), node.right);
+    }
+
+    // Builds a node from parts whose heights differ by at most 2, rotating as needed
+    private static Node balance(CustomerDB data, Node left, Node right) {
+        int diff = height(left) - height(right);
+        if (diff > 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new Node(left.data, left.left, new Node(data, left.right, right));
+            }
+            Node mid = left.right;
+            return new Node(mid.data, new Node(left.data, left.left, mid.left), new Node(data, mid.right, right));
+        }
+        if (diff < -1) {
+            if (height(right.right) >= height(right.left)) {
+                return new Node(right.data, new Node(data, left, right.left), right.right);
+            }
+            Node mid = right.left;
+            return new Node(mid.data, new Node(data, left, mid.left), new Node(right.data, mid.right, right.right));
+        }
+        return new Node(data, left, right);
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+}
@@ -0,0 +1,179 @@
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Thread-safe OrderChannel for many checkout threads and fulfilment workers.
+// Lock-striped by tier: each OrderTier has its own lane and lock, so producers of different
+// tiers never contend, and a counting semaphore lets idle workers block instead of spinning.
+// Orders are handed out in strict tier priority, FIFO within a tier.
+class ConcurrentOrderQueue implements OrderChannel {
+    private static final class Ticket {
+        final Order order;
+        final long enqueuedAt;
+
+        Ticket(Order order, long enqueuedAt) {
+            this.order = order;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private static final class Lane {
+        final ReentrantLock lock = new ReentrantLock();
+        final ArrayDeque<Ticket> items = new ArrayDeque<>();
+        final AtomicInteger count = new AtomicInteger(); // readable without the lock
+    }
+
+    private final Lane[] lanes;
+    private final Semaphore available = new Semaphore(0); // one permit per queued order
+    private final OrderPipelineMetrics metrics;
+
+    public ConcurrentOrderQueue() {
+        this(new OrderPipelineMetrics());
+    }
+
+    public ConcurrentOrderQueue(OrderPipelineMetrics metrics) {
+        this.metrics = metrics;
+        lanes = new Lane[OrderTier.values().length];
+        for (int i = 0; i < lanes.length; i++) lanes[i] = new Lane();
+    }
+
+    public OrderPipelineMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public void enqueue(Order order) {
+        Lane lane = lanes[order.tier.ordinal()];
+        Ticket ticket = new Ticket(order, System.nanoTime());
+        lane.lock.lock();
+        try {
+            lane.items.addLast(ticket);
+            lane.count.incrementAndGet();
+        } finally {
+            lane.lock.unlock();
+        }
+        metrics.recordEnqueue(order.tier);
+        available.release(); // only after the order is visible in its lane
+    }
+
+    // Non-blocking: null when nothing is queued
+    @Override
+    public Order dequeue() {
+        return available.tryAcquire() ? claim() : null;
+    }
+
+    public Order take() throws InterruptedException {
+        available.acquire();
+        return claim();
+    }
+
+    public Order poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return available.tryAcquire(timeout, unit) ? claim() : null;
+    }
+
+    // Non-blocking batch take: up to maxItems orders in the order repeated dequeue() calls
+    // would return them. The orders are claimed with one semaphore operation and each lane is
+    // locked once for all of its orders, instead of once per order.
+    @Override
+    public int drainTo(Collection<? super Order> batch, int maxItems) {
+        int n = acquireUpTo(maxItems);
+        if (n > 0) claim(batch, n);
+        return n;
+    }
+
+    // Like drainTo(batch, maxItems), but waits up to maxWait for the first order when none is
+    // queued. It does not wait for the batch to fill; returns 0 on timeout.
+    public int drainTo(Collection<? super Order> batch, int maxItems, long maxWait, TimeUnit unit) throws InterruptedException {
+        if (maxItems < 1) throw new IllegalArgumentException("maxItems must be positive");
+        int n = acquireUpTo(maxItems);
+        if (n == 0) {
+            if (!available.tryAcquire(maxWait, unit)) return 0;
+            n = 1 + acquireUpTo(maxItems - 1);
+        }
+        claim(batch, n);
+        return n;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return available.availablePermits() == 0;
+    }
+
+    @Override
+    public int size() {
+        return available.availablePermits();
+    }
+
+    @Override
+    public void showQueue() {
+        System.out.println("\nCurrent Order Queue:");
+        if (isEmpty()) System.out.println("  (Empty)");
+        for (int i = lanes.length - 1; i >= 0; i--) {
+            Lane lane = lanes[i];
+            lane.lock.lock();
+            try {
+                if (!lane.items.isEmpty()) System.out.println(" " + OrderTier.values()[i] + " (" + lane.items.size() + "):");
+                for (Ticket t : lane.items) System.out.println("  " + t.order);
+            } finally {
+                lane.lock.unlock();
+            }
+        }
+    }
+
+    // Takes as many permits as are available, up to max
+    private int acquireUpTo(int max) {
+        while (true) {
+            int n = Math.min(max, available.availablePermits());
+            if (n <= 0 || available.tryAcquire(n)) return Math.max(n, 0);
+        }
+    }
+
+    // Caller holds n permits, so at least n unclaimed orders sit in the lanes
+    private void claim(Collection<? super Order> batch, int n) {
+        long now = System.nanoTime();
+        while (n > 0) {
+            for (int i = lanes.length - 1; i >= 0 && n > 0; i--) {
+                Lane lane = lanes[i];
+                if (lane.count.get() == 0) continue; // hint only, rechecked under the lock
+                int taken = 0;
+                lane.lock.lock();
+                try {
+                    for (Ticket t; taken < n && (t = lane.items.pollFirst()) != null; taken++) {
+                        batch.add(t.order);
+                        metrics.recordWait(now - t.enqueuedAt);
+                    }
+                    lane.count.addAndGet(-taken);
+                } finally {
+                    lane.lock.unlock();
+                }
+                if (taken > 0) metrics.recordDequeues(OrderTier.values()[i], taken);
+                n -= taken;
+            }
+        }
+    }
+
+    // Caller holds a permit, so at least one unclaimed order sits in some lane
+    private Order claim() {
+        while (true) {
+            for (int i = lanes.length - 1; i >= 0; i--) {
+                Lane lane = lanes[i];
+                if (lane.count.get() == 0) continue; // hint only, rechecked under the lock
+                Ticket t;
+                lane.lock.lock();
+                try {
+                    t = lane.items.pollFirst();
+                    if (t != null) lane.count.decrementAndGet();
+                } finally {
+                    lane.lock.unlock();
+                }
+                if (t != null) {
+                    metrics.recordDequeue(t.order.tier, System.nanoTime() - t.enqueuedAt);
+                    return t.order;
+                }
+            }
+        }
+    }
+}
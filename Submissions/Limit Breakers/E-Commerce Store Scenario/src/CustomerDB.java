@@ -1,8 +1,18 @@
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 class CustomerDB {
+    private static final AtomicIntegerFieldUpdater<CustomerDB> PURCHASES =
+            AtomicIntegerFieldUpdater.newUpdater(CustomerDB.class, "purchaseCount");
+
     String customerId;
     String name;
-    int purchaseCount; // used for promotion heuristic
+    volatile int purchaseCount; // used for promotion heuristic
     String email;
+    CustomerIndex index;        // secondary indexes this profile is filed in, if any
+    int rankedPurchases;        // purchaseCount as last filed in index, guarded by it
 
     public CustomerDB(String customerId, String name, String email) {
         this.customerId = customerId;
@@ -11,8 +21,12 @@ class CustomerDB {
         this.purchaseCount = 0;
     }
 
-    public void incrementPurchases() {
-        purchaseCount++;
+    // Safe to call from many threads at once; returns the new count
+    public int incrementPurchases() {
+        int count = PURCHASES.incrementAndGet(this);
+        CustomerIndex idx = index;
+        if (idx != null) idx.purchasesChanged(this);
+        return count;
     }
 
     public String toString() {
@@ -22,59 +36,176 @@ class CustomerDB {
 
 class CustomerNode {
     CustomerDB data;
-    CustomerNode left, right;
+    CustomerNode left, right, parent;
+    int height = 1; // maintained in AVL mode only
 
     public CustomerNode(CustomerDB data) {
         this.data = data;
     }
 }
 
+// Customer profiles ordered by customerId.
+// Every operation is iterative and walks parent pointers, so depth never touches the call
+// stack. In AVL mode (the default) the tree rebalances on insert and delete, keeping depth
+// under ~1.44 log2(n) even when ids arrive in order ("C001", "C002", ...). PLAIN keeps the
+// original unbalanced behaviour, where sorted ids build a linked list.
+// SPLAY is self-adjusting: every access moves the customer to the root, so customers that
+// are looked up often stay within a few levels of it (amortized O(log n) per operation).
 class CustomerBST {
+    enum Mode {
+        PLAIN, // no rebalancing
+        AVL,   // height-balanced, O(log n) worst case
+        SPLAY  // accessed customers are splayed to the root
+    }
+
+    private final Mode mode;
+    private final int hotPurchases; // SPLAY: only customers with at least this many purchases are splayed on find
     private CustomerNode root;
+    private int size;
+    private CustomerIndex index; // built on first use of indexes()
+    private int modCount;        // structural changes, lets cursors notice them
 
-    public void addCustomer(CustomerDB profile) {
-        root = insert(root, profile.customerId, profile);
+    public CustomerBST() {
+        this(Mode.AVL);
     }
 
-    private CustomerNode insert(CustomerNode node, String id, CustomerDB profile) {
-        if (node == null) return new CustomerNode(profile);
-        if (id.compareTo(node.data.customerId) < 0)
-            node.left = insert(node.left, id, profile);
-        else if (id.compareTo(node.data.customerId) > 0)
-            node.right = insert(node.right, id, profile);
-        return node;
+    public CustomerBST(Mode mode) {
+        this(mode, 0);
     }
 
-    public CustomerDB findCustomer(String id) {
-        CustomerNode node = find(root, id);
-        return (node != null) ? node.data : null;
+    // With hotPurchases > 0, findCustomer in SPLAY mode leaves the tree alone for customers
+    // below that purchaseCount, so one-off lookups do not push regular buyers down.
+    public CustomerBST(Mode mode, int hotPurchases) {
+        if (hotPurchases < 0) throw new IllegalArgumentException("hotPurchases must not be negative");
+        this.mode = mode;
+        this.hotPurchases = hotPurchases;
     }
 
-    private CustomerNode find(CustomerNode node, String id) {
-        if (node == null || node.data.customerId.equals(id)) return node;
-        if (id.compareTo(node.data.customerId) < 0) return find(node.left, id);
-        else return find(node.right, id);
+    public Mode mode() {
+        return mode;
     }
 
-    public void deleteCustomer(String id) {
-        root = delete(root, id);
+    public int size() {
+        return size;
+    }
+
+    // Email, name-prefix and purchase-ranking indexes over this tree. Built from the current
+    // customers on the first call, then kept up to date by add, delete and purchases.
+    public CustomerIndex indexes() {
+        if (index == null) {
+            index = new CustomerIndex();
+            for (CustomerNode node = (root == null) ? null : findMin(root); node != null; node = successor(node)) {
+                index.add(node.data);
+            }
+        }
+        return index;
+    }
+
+    // Longest root-to-leaf path in nodes, walked without recursion
+    public int height() {
+        if (mode == Mode.AVL) return height(root);
+        int max = 0;
+        int depth = 0;
+        CustomerNode node = root, prev = null;
+        while (node != null) {
+            CustomerNode next;
+            if (prev == node.parent) {
+                depth++;
+                max = Math.max(max, depth);
+                next = node.left != null ? node.left : node.right != null ? node.right : node.parent;
+            } else if (prev == node.left && node.right != null) {
+                next = node.right;
+            } else {
+                next = node.parent;
+            }
+            if (next == node.parent) depth--;
+            prev = node;
+            node = next;
+        }
+        return max;
+    }
+
+    // Duplicate ids are ignored, as before
+    public void addCustomer(CustomerDB profile) {
+        String id = profile.customerId;
+        CustomerNode parent = null;
+        CustomerNode node = root;
+        int cmp = 0;
+        while (node != null) {
+            cmp = id.compareTo(node.data.customerId);
+            if (cmp == 0) {
+                if (mode == Mode.SPLAY) splay(node);
+                return;
+            }
+            parent = node;
+            node = cmp < 0 ? node.left : node.right;
+        }
+
+        CustomerNode added = new CustomerNode(profile);
+        added.parent = parent;
+        if (parent == null) root = added;
+        else if (cmp < 0) parent.left = added;
+        else parent.right = added;
+        size++;
+        modCount++;
+        if (index != null) index.add(profile);
+        if (mode == Mode.AVL) rebalanceUpFrom(parent);
+        else if (mode == Mode.SPLAY) splay(added);
     }
 
-    private CustomerNode delete(CustomerNode node, String id) {
+    public CustomerDB findCustomer(String id) {
+        if (mode != Mode.SPLAY) {
+            CustomerNode node = find(id);
+            return (node != null) ? node.data : null;
+        }
+
+        CustomerNode node = root;
+        int depth = 0;
+        while (node != null) {
+            int cmp = id.compareTo(node.data.customerId);
+            if (cmp == 0) break;
+            node = cmp < 0 ? node.left : node.right;
+            depth++;
+        }
         if (node == null) return null;
+        // cold customers are splayed too once the path gets long, so skipping them can
+        // never leave a degenerate chain behind (e.g. after inserting ids in order)
+        if (node.data.purchaseCount >= hotPurchases || depth > deepPath()) splay(node);
+        return node.data;
+    }
+
+    private int deepPath() {
+        return 4 * (32 - Integer.numberOfLeadingZeros(size));
+    }
 
-        if (id.compareTo(node.data.customerId) < 0)
-            node.left = delete(node.left, id);
-        else if (id.compareTo(node.data.customerId) > 0)
-            node.right = delete(node.right, id);
-        else {
-            if (node.left == null) return node.right;
-            if (node.right == null) return node.left;
-            CustomerNode min = findMin(node.right);
-            node.data = min.data;
-            node.right = delete(node.right, min.data.customerId);
+    private CustomerNode find(String id) {
+        CustomerNode node = root;
+        while (node != null) {
+            int cmp = id.compareTo(node.data.customerId);
+            if (cmp == 0) return node;
+            node = cmp < 0 ? node.left : node.right;
         }
-        return node;
+        return null;
+    }
+
+    public void deleteCustomer(String id) {
+        CustomerNode node = find(id);
+        if (node == null) return;
+        if (index != null) index.remove(node.data);
+
+        if (node.left != null && node.right != null) {
+            // Two children: take over the successor's profile and unlink the successor instead
+            CustomerNode successor = findMin(node.right);
+            node.data = successor.data;
+            node = successor;
+        }
+
+        CustomerNode child = (node.left != null) ? node.left : node.right;
+        CustomerNode parent = node.parent;
+        replaceChild(parent, node, child);
+        size--;
+        if (mode == Mode.AVL) rebalanceUpFrom(parent);
+        else if (mode == Mode.SPLAY && parent != null) splay(parent);
     }
 
     private CustomerNode findMin(CustomerNode node) {
@@ -82,46 +213,228 @@ class CustomerBST {
         return node;
     }
 
+    // Rotates the customer one level up, towards the root. In AVL mode the rotation is only
+    // done when both nodes stay balanced and the subtree does not grow taller, so repeated
+    // promotions lift a hot customer as far as the balance invariant allows.
+    // In SPLAY mode the customer is splayed all the way to the root.
     public void promoteHotCustomer(String id) {
-        CustomerNode parent = null;
-        CustomerNode node = root;
-
-        while (node != null && !node.data.customerId.equals(id)) {
-            parent = node;
-            if (id.compareTo(node.data.customerId) < 0) node = node.left;
-            else node = node.right;
-        }
+        CustomerNode node = find(id);
 
         if (node == null) {
             System.out.println("Customer not found for promotion.");
             return;
         }
-
-        if (parent != null && parent.left == node) {
-            parent.left = node.right;
-            node.right = parent;
-
-            if (root == parent) root = node;
-            System.out.println("Promoted hot customer " + id + " closer to root.");
-        } else if (parent != null && parent.right == node) {
-            parent.right = node.left;
-            node.left = parent;
-            if (root == parent) root = node;
-            System.out.println("Promoted hot customer " + id + " closer to root.");
-        } else {
+        if (node.parent == null) {
             System.out.println("Customer already at root.");
+            return;
         }
+        if (mode == Mode.SPLAY) {
+            splay(node);
+            System.out.println("Promoted hot customer " + id + " to root.");
+            return;
+        }
+        if (mode == Mode.AVL && !canPromoteBalanced(node)) {
+            System.out.println("Customer " + id + " is already as close to the root as balancing allows.");
+            return;
+        }
+
+        rotateUp(node);
+        if (mode == Mode.AVL) rebalanceUpFrom(node.parent);
+        System.out.println("Promoted hot customer " + id + " closer to root.");
+    }
+
+    // Heights the two nodes would have after rotating node above its parent
+    private boolean canPromoteBalanced(CustomerNode node) {
+        CustomerNode parent = node.parent;
+        boolean fromLeft = parent.left == node;
+        int inner = height(fromLeft ? node.right : node.left);  // subtree that changes sides
+        int outer = height(fromLeft ? node.left : node.right);  // stays under node
+        int sibling = height(fromLeft ? parent.right : parent.left);
+        int parentHeight = 1 + Math.max(inner, sibling);
+        int nodeHeight = 1 + Math.max(outer, parentHeight);
+        return Math.abs(inner - sibling) <= 1
+                && Math.abs(outer - parentHeight) <= 1
+                && nodeHeight <= parent.height;
     }
 
     public void display() {
         System.out.println("\nCustomer BST (Inorder):");
-        inorder(root);
+        for (CustomerDB c : range(null, null)) System.out.println("  " + c);
     }
 
-    private void inorder(CustomerNode node) {
-        if (node == null) return;
-        inorder(node.left);
-        System.out.println("  " + node.data);
-        inorder(node.right);
+    // Customers with fromId <= customerId <= toId in id order; null leaves that side open
+    public Iterable<CustomerDB> range(String fromId, String toId) {
+        return () -> cursor(fromId, toId);
+    }
+
+    public Cursor cursor(String fromId, String toId) {
+        return new Cursor(fromId, toId);
     }
-}
\ No newline at end of file
+
+    // Lazy in-order cursor over an id range. It walks parent pointers, so it needs no stack
+    // and allocates nothing per customer: a full export streams in constant memory.
+    // If the tree changes structurally between calls (adds, deletes, splaying), the cursor
+    // re-seeks just past the last id it returned, so it neither fails nor repeats customers.
+    class Cursor implements Iterator<CustomerDB> {
+        private final String fromId, toId;
+        private CustomerNode next;
+        private String lastId;
+        private int expectedModCount;
+
+        private Cursor(String fromId, String toId) {
+            this.fromId = fromId;
+            this.toId = toId;
+            seek(fromId, true);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (expectedModCount != modCount) {
+                if (lastId == null) seek(fromId, true);
+                else seek(lastId, false);
+            }
+            return next != null;
+        }
+
+        @Override
+        public CustomerDB next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            CustomerDB c = next.data;
+            lastId = c.customerId;
+            next = inRange(successor(next));
+            return c;
+        }
+
+        // Appends up to pageSize customers to page; returns how many were added (0 at the end)
+        public int nextPage(List<CustomerDB> page, int pageSize) {
+            int added = 0;
+            while (added < pageSize && hasNext()) {
+                page.add(next());
+                added++;
+            }
+            return added;
+        }
+
+        // Id of the last customer returned; a new cursor can resume from here after a restart
+        public String lastId() {
+            return lastId;
+        }
+
+        // First node with id >= from (or > from when not inclusive)
+        private void seek(String from, boolean inclusive) {
+            CustomerNode node = root, best = null;
+            while (node != null) {
+                int cmp = (from == null) ? -1 : from.compareTo(node.data.customerId);
+                if (cmp < 0 || (cmp == 0 && inclusive)) {
+                    best = node;
+                    if (cmp == 0) break;
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+            next = inRange(best);
+            expectedModCount = modCount;
+        }
+
+        private CustomerNode inRange(CustomerNode node) {
+            return (node == null || (toId != null && node.data.customerId.compareTo(toId) > 0)) ? null : node;
+        }
+    }
+
+    private static CustomerNode successor(CustomerNode node) {
+        if (node.right != null) {
+            node = node.right;
+            while (node.left != null) node = node.left;
+            return node;
+        }
+        while (node.parent != null && node.parent.right == node) node = node.parent;
+        return node.parent;
+    }
+
+    // Bottom-up splay: zig-zig rotates the grandparent first, zig-zag the parent first,
+    // which roughly halves the depth of every node on the access path
+    private void splay(CustomerNode x) {
+        while (x.parent != null) {
+            CustomerNode p = x.parent;
+            CustomerNode g = p.parent;
+            if (g == null) {
+                rotateUp(x);
+            } else if ((g.left == p) == (p.left == x)) {
+                rotateUp(p);
+                rotateUp(x);
+            } else {
+                rotateUp(x);
+                rotateUp(x);
+            }
+        }
+    }
+
+    // Single rotation that moves x above its parent
+    private void rotateUp(CustomerNode x) {
+        if (x.parent.left == x) rotateRight(x.parent);
+        else rotateLeft(x.parent);
+    }
+
+    // Walks from node to the root fixing heights and rotating where the balance factor
+    // reaches +-2; stops early once a subtree's height is unchanged and balanced.
+    private void rebalanceUpFrom(CustomerNode node) {
+        while (node != null) {
+            int oldHeight = node.height;
+            int balance = height(node.left) - height(node.right);
+            if (balance > 1) {
+                if (height(node.left.left) < height(node.left.right)) rotateLeft(node.left);
+                node = rotateRight(node);
+            } else if (balance < -1) {
+                if (height(node.right.right) < height(node.right.left)) rotateRight(node.right);
+                node = rotateLeft(node);
+            } else {
+                updateHeight(node);
+                if (node.height == oldHeight) return;
+            }
+            node = node.parent;
+        }
+    }
+
+    // Returns the node that took x's place
+    private CustomerNode rotateLeft(CustomerNode x) {
+        CustomerNode y = x.right;
+        x.right = y.left;
+        if (y.left != null) y.left.parent = x;
+        replaceChild(x.parent, x, y);
+        y.left = x;
+        x.parent = y;
+        updateHeight(x);
+        updateHeight(y);
+        return y;
+    }
+
+    private CustomerNode rotateRight(CustomerNode x) {
+        CustomerNode y = x.left;
+        x.left = y.right;
+        if (y.right != null) y.right.parent = x;
+        replaceChild(x.parent, x, y);
+        y.right = x;
+        x.parent = y;
+        updateHeight(x);
+        updateHeight(y);
+        return y;
+    }
+
+    // Puts child where old was under parent (or at the root), fixing the back pointer
+    private void replaceChild(CustomerNode parent, CustomerNode old, CustomerNode child) {
+        modCount++;
+        if (parent == null) root = child;
+        else if (parent.left == old) parent.left = child;
+        else parent.right = child;
+        if (child != null) child.parent = parent;
+    }
+
+    private static int height(CustomerNode node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static void updateHeight(CustomerNode node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+    }
+}
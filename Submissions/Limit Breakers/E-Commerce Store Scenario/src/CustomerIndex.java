@@ -0,0 +1,244 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+// Secondary indexes kept next to a CustomerBST:
+//   email         -> hash index, O(1); customers sharing an email are kept in registration order
+//   name prefix   -> sorted index on the lower-cased name, O(log n + results)
+//   purchaseCount -> order-statistic treap, top-K in O(log n + K), rank in O(log n)
+// The tree adds and removes customers here; purchase changes arrive through
+// CustomerDB.incrementPurchases, which notifies the index the customer belongs to.
+class CustomerIndex {
+    private final HashMap<String, CustomerDB> byEmail = new HashMap<>();            // first registered
+    private final HashMap<String, ArrayList<CustomerDB>> sharedEmail = new HashMap<>(); // later ones, clashes only
+    private final TreeMap<String, CustomerDB> byName = new TreeMap<>(); // "name\0id" -> customer
+    private final Random priorities = new Random(0x5EED);
+    private RankNode byPurchases;
+
+    // Treap node ordered by (purchases desc, customerId asc); size counts the subtree
+    private static final class RankNode {
+        final CustomerDB customer;
+        final int purchases; // count the node was filed under
+        final int priority;
+        RankNode left, right;
+        int size = 1;
+
+        RankNode(CustomerDB customer, int purchases, int priority) {
+            this.customer = customer;
+            this.purchases = purchases;
+            this.priority = priority;
+        }
+    }
+
+    synchronized void add(CustomerDB c) {
+        if (c.email != null) {
+            CustomerDB first = byEmail.putIfAbsent(emailKey(c.email), c);
+            if (first != null) sharedEmail.computeIfAbsent(emailKey(c.email), k -> new ArrayList<>(2)).add(c);
+        }
+        byName.put(nameKey(c), c);
+        c.rankedPurchases = c.purchaseCount;
+        byPurchases = insert(byPurchases, new RankNode(c, c.rankedPurchases, priorities.nextInt()));
+        c.index = this;
+    }
+
+    synchronized void remove(CustomerDB c) {
+        if (c.index != this) return;
+        if (c.email != null) removeEmail(emailKey(c.email), c);
+        byName.remove(nameKey(c));
+        byPurchases = delete(byPurchases, c.rankedPurchases, c.customerId);
+        c.index = null;
+    }
+
+    // Re-files the customer under its current count. Reading the count here instead of
+    // trusting the caller's value keeps the treap right when increments race.
+    synchronized void purchasesChanged(CustomerDB c) {
+        if (c.index != this || c.rankedPurchases == c.purchaseCount) return;
+        byPurchases = delete(byPurchases, c.rankedPurchases, c.customerId);
+        c.rankedPurchases = c.purchaseCount;
+        byPurchases = insert(byPurchases, new RankNode(c, c.rankedPurchases, priorities.nextInt()));
+    }
+
+    // The earliest registered customer still indexed under this email
+    public synchronized CustomerDB findByEmail(String email) {
+        return byEmail.get(emailKey(email));
+    }
+
+    // Every customer indexed under this email, earliest registered first
+    public synchronized List<CustomerDB> findAllByEmail(String email) {
+        String key = emailKey(email);
+        CustomerDB first = byEmail.get(key);
+        if (first == null) return new ArrayList<>();
+        List<CustomerDB> result = new ArrayList<>();
+        result.add(first);
+        ArrayList<CustomerDB> shared = sharedEmail.get(key);
+        if (shared != null) result.addAll(shared);
+        return result;
+    }
+
+    // Case-insensitive, in name order, at most limit results
+    public synchronized List<CustomerDB> findByNamePrefix(String prefix, int limit) {
+        List<CustomerDB> result = new ArrayList<>();
+        String from = prefix.toLowerCase(Locale.ROOT);
+        for (Map.Entry<String, CustomerDB> e : byName.tailMap(from, true).entrySet()) {
+            if (result.size() >= limit || !e.getKey().startsWith(from)) break;
+            result.add(e.getValue());
+        }
+        return result;
+    }
+
+    // Highest purchaseCount first, ties by customerId
+    public synchronized List<CustomerDB> topBuyers(int k) {
+        List<CustomerDB> result = new ArrayList<>(Math.min(k, size(byPurchases)));
+        ArrayDeque<RankNode> stack = new ArrayDeque<>();
+        RankNode node = byPurchases;
+        while (result.size() < k && (node != null || !stack.isEmpty())) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+            node = stack.pop();
+            result.add(node.customer);
+            node = node.right;
+        }
+        return result;
+    }
+
+    // 1 for the top buyer; 0 if the customer is not indexed here
+    public synchronized int purchaseRank(CustomerDB c) {
+        if (c == null || c.index != this) return 0;
+        int rank = 1;
+        RankNode node = byPurchases;
+        while (node != null) {
+            int cmp = compare(c.rankedPurchases, c.customerId, node);
+            if (cmp == 0) return rank + size(node.left);
+            if (cmp < 0) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return 0;
+    }
+
+    // The customer holding the given 1-based rank, or null
+    public synchronized CustomerDB customerAtRank(int rank) {
+        RankNode node = byPurchases;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (rank <= leftSize) {
+                node = node.left;
+            } else if (rank == leftSize + 1) {
+                return node.customer;
+            } else {
+                rank -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        return null;
+    }
+
+    public synchronized int size() {
+        return size(byPurchases);
+    }
+
+    // The next customer sharing the email takes over when the first one leaves
+    private void removeEmail(String key, CustomerDB c) {
+        ArrayList<CustomerDB> shared = sharedEmail.get(key);
+        if (byEmail.get(key) == c) {
+            if (shared == null) {
+                byEmail.remove(key);
+                return;
+            }
+            byEmail.put(key, shared.remove(0));
+        } else if (shared == null || !shared.remove(c)) {
+            return;
+        }
+        if (shared.isEmpty()) sharedEmail.remove(key);
+    }
+
+    private static String emailKey(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    private static String nameKey(CustomerDB c) {
+        String name = (c.name == null) ? "" : c.name.toLowerCase(Locale.ROOT);
+        return name + '\0' + c.customerId;
+    }
+
+    private static int compare(int purchases, String id, RankNode node) {
+        if (purchases != node.purchases) return purchases > node.purchases ? -1 : 1;
+        return id.compareTo(node.customer.customerId);
+    }
+
+    // Expected depth is O(log n), so the recursion stays shallow
+    private static RankNode insert(RankNode node, RankNode added) {
+        if (node == null) return added;
+        if (compare(added.purchases, added.customer.customerId, node) < 0) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) node = rotateRight(node);
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) node = rotateLeft(node);
+        }
+        update(node);
+        return node;
+    }
+
+    private static RankNode delete(RankNode node, int purchases, String id) {
+        if (node == null) return null;
+        int cmp = compare(purchases, id, node);
+        if (cmp < 0) {
+            node.left = delete(node.left, purchases, id);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, purchases, id);
+        } else {
+            return merge(node.left, node.right);
+        }
+        update(node);
+        return node;
+    }
+
+    // Every key in a sorts before every key in b
+    private static RankNode merge(RankNode a, RankNode b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        update(b);
+        return b;
+    }
+
+    private static RankNode rotateRight(RankNode node) {
+        RankNode l = node.left;
+        node.left = l.right;
+        l.right = node;
+        update(node);
+        return l;
+    }
+
+    private static RankNode rotateLeft(RankNode node) {
+        RankNode r = node.right;
+        node.right = r.left;
+        r.left = node;
+        update(node);
+        return r;
+    }
+
+    private static void update(RankNode node) {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    private static int size(RankNode node) {
+        return node == null ? 0 : node.size;
+    }
+}
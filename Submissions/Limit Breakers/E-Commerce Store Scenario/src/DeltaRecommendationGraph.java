@@ -0,0 +1,326 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Co-purchases recorded on top of a FrozenRecommendationGraph without touching it.
+// addRelation writes into a small delta layer: per changed product, a hash of the neighbors
+// whose count changed, holding their total (base + new) count. recommendProducts merges a
+// delta row into the base ranking on the fly. compact() folds the delta into a new frozen
+// graph in O(products + edges + d log d) for the d changed entries. It happens on its own
+// once the delta reaches 1/16 of the base entries, and freeze() compacts and returns the
+// result. The base graph is never modified, so snapshots handed out earlier stay valid.
+// Not thread-safe for writers.
+class DeltaRecommendationGraph {
+    private static final int MIN_COMPACT = 1024;
+
+    private FrozenRecommendationGraph base;
+
+    // Products the base does not know, with ids continuing after the base's
+    private StringIntMap newIds = new StringIntMap();
+    private String[] newProducts = new String[16];
+    private int newCount;
+
+    // Delta layer: product id -> changed neighbors
+    private int[] rowKeys = emptyKeys(16);
+    private DeltaRow[] rows = new DeltaRow[16];
+    private int rowCount;
+    private int deltaEntries;
+    private long newEdges; // undirected edges added since the last compaction
+
+    // Changed neighbors of one product: open addressing target -> total count
+    private static final class DeltaRow {
+        int[] keys = emptyKeys(4);
+        int[] weights = new int[4];
+        int size;
+        int added;       // entries whose target is not in the base row
+        long[] byWeight; // (inverted count, target) in ranking order; null after a change
+
+        int slotOf(int target) {
+            int mask = keys.length - 1;
+            int slot = mix(target) & mask;
+            while (keys[slot] != -1 && keys[slot] != target) slot = (slot + 1) & mask;
+            return slot;
+        }
+
+        int get(int target) {
+            int slot = slotOf(target);
+            return keys[slot] == -1 ? 0 : weights[slot];
+        }
+
+        // Entries as (inverted count, target), heaviest first, equal counts by target
+        long[] ranking() {
+            if (byWeight == null) {
+                long[] packed = new long[size];
+                int n = 0;
+                for (int s = 0; s < keys.length; s++) {
+                    if (keys[s] != -1) packed[n++] = ((long) (Integer.MAX_VALUE - weights[s]) << 32) | keys[s];
+                }
+                Arrays.sort(packed);
+                byWeight = packed;
+            }
+            return byWeight;
+        }
+
+        void grow() {
+            int[] oldKeys = keys, oldWeights = weights;
+            keys = emptyKeys(oldKeys.length * 2);
+            weights = new int[oldKeys.length * 2];
+            for (int s = 0; s < oldKeys.length; s++) {
+                if (oldKeys[s] == -1) continue;
+                int slot = slotOf(oldKeys[s]);
+                keys[slot] = oldKeys[s];
+                weights[slot] = oldWeights[s];
+            }
+        }
+    }
+
+    public DeltaRecommendationGraph(FrozenRecommendationGraph base) {
+        this.base = base;
+    }
+
+    // Records one co-purchase in the delta layer
+    public void addRelation(String productA, String productB) {
+        if (productA.equals(productB)) return;
+        int a = intern(productA);
+        int b = intern(productB);
+        if (bumpDelta(a, b)) newEdges++;
+        bumpDelta(b, a);
+        if (deltaEntries >= Math.max(MIN_COMPACT, base.entryCount() / 16)) compact();
+    }
+
+    // Best k neighbors by total co-purchase count. Without pending changes to this product
+    // this reads the base ranking; otherwise the delta row is merged in.
+    public List<String> recommendProducts(String productId, int k) {
+        int p = idOf(productId);
+        if (p < 0) return Collections.emptyList();
+        DeltaRow d = rowCount == 0 ? null : row(p);
+        if (d == null) return p < base.productCount() ? base.recommendProducts(productId, k) : Collections.emptyList();
+
+        long[] changed = d.ranking();
+        int i = p < base.productCount() ? base.rowStart(p) : 0;
+        int end = p < base.productCount() ? base.rowEnd(p) : 0;
+        List<String> result = new ArrayList<>(Math.min(k, end - i + changed.length));
+        int j = 0;
+        while (result.size() < k) {
+            while (i < end && d.get(base.target(base.byWeight(i))) != 0) i++; // superseded by the delta row
+            boolean baseLeft = i < end, deltaLeft = j < changed.length;
+            if (!baseLeft && !deltaLeft) break;
+            if (deltaLeft && (!baseLeft || weightOf(changed[j]) >= base.weight(base.byWeight(i)))) {
+                result.add(productAt((int) changed[j++]));
+            } else {
+                result.add(productAt(base.target(base.byWeight(i++))));
+            }
+        }
+        return result;
+    }
+
+    public int weight(String productA, String productB) {
+        int a = idOf(productA), b = idOf(productB);
+        if (a < 0 || b < 0) return 0;
+        DeltaRow d = rowCount == 0 ? null : row(a);
+        int w = d == null ? 0 : d.get(b);
+        return w != 0 ? w : baseWeight(a, b);
+    }
+
+    // The graph with every recorded co-purchase, compacting first if needed
+    public FrozenRecommendationGraph freeze() {
+        compact();
+        return base;
+    }
+
+    // Folds the delta layer into a new frozen graph. Runs of rows without changes are copied
+    // in bulk; a changed row is merged with its sorted delta entries in one pass by target, and its
+    // ranking in one pass by count.
+    public void compact() {
+        if (rowCount == 0 && newCount == 0) return;
+        int baseProducts = base.productCount();
+        int n = baseProducts + newCount;
+        int[] offsets = new int[n + 1];
+        for (int p = 0; p < n; p++) {
+            int size = p < baseProducts ? base.rowEnd(p) - base.rowStart(p) : 0;
+            DeltaRow d = row(p);
+            offsets[p + 1] = offsets[p] + size + (d == null ? 0 : d.added);
+        }
+
+        int[] targets = new int[offsets[n]];
+        int[] weights = new int[offsets[n]];
+        int[] ranked = new int[offsets[n]];
+        int[] moved = new int[16]; // base entry (relative to its row start) -> new entry index, -1 if changed
+        int unchangedFrom = 0; // first base row of the run of unchanged rows not yet copied
+        for (int p = 0; p < n; p++) {
+            DeltaRow d = row(p);
+            if (d == null) continue;
+            if (unchangedFrom < Math.min(p, baseProducts)) {
+                base.copyRows(unchangedFrom, Math.min(p, baseProducts), targets, weights, ranked, offsets[unchangedFrom]);
+            }
+            unchangedFrom = p + 1;
+            int out = offsets[p];
+            int start = p < baseProducts ? base.rowStart(p) : 0;
+            int end = p < baseProducts ? base.rowEnd(p) : 0;
+            if (moved.length < end - start) moved = new int[end - start];
+
+            // merge by target: the base row and the delta entries, both sorted
+            long[] changed = new long[d.size];
+            int c = 0;
+            for (int s = 0; s < d.keys.length; s++) {
+                if (d.keys[s] != -1) changed[c++] = ((long) d.keys[s] << 32) | d.weights[s];
+            }
+            Arrays.sort(changed);
+            int i = start, j = 0;
+            while (i < end || j < changed.length) {
+                int deltaTarget = j < changed.length ? (int) (changed[j] >>> 32) : Integer.MAX_VALUE;
+                if (i < end && base.target(i) < deltaTarget) {
+                    moved[i - start] = out;
+                    targets[out] = base.target(i);
+                    weights[out++] = base.weight(i++);
+                } else {
+                    if (i < end && base.target(i) == deltaTarget) moved[i++ - start] = -1;
+                    targets[out] = deltaTarget;
+                    weights[out++] = (int) changed[j++];
+                }
+            }
+
+            // merge by count: unchanged base entries keep their ranking, changed ones are
+            // ranked among themselves
+            long[] changedRanking = d.ranking();
+            int r = offsets[p];
+            i = start;
+            j = 0;
+            while (true) {
+                while (i < end && moved[base.byWeight(i) - start] < 0) i++;
+                boolean baseLeft = i < end, deltaLeft = j < changedRanking.length;
+                if (!baseLeft && !deltaLeft) break;
+                if (deltaLeft && (!baseLeft || weightOf(changedRanking[j]) >= base.weight(base.byWeight(i)))) {
+                    ranked[r++] = find(targets, offsets[p], out, (int) changedRanking[j++]);
+                } else {
+                    ranked[r++] = moved[base.byWeight(i++) - start];
+                }
+            }
+        }
+        if (unchangedFrom < baseProducts) base.copyRows(unchangedFrom, baseProducts, targets, weights, ranked, offsets[unchangedFrom]);
+
+        String[] products = new String[n];
+        StringIntMap ids = new StringIntMap(n);
+        for (int p = 0; p < n; p++) {
+            products[p] = productAt(p);
+            ids.put(products[p], p);
+        }
+        base = new FrozenRecommendationGraph(products, n, ids, offsets, targets, weights, ranked);
+        newIds = new StringIntMap();
+        newProducts = new String[16];
+        newCount = 0;
+        rowKeys = emptyKeys(16);
+        rows = new DeltaRow[16];
+        rowCount = 0;
+        deltaEntries = 0;
+        newEdges = 0;
+    }
+
+    public int productCount() {
+        return base.productCount() + newCount;
+    }
+
+    // Undirected edges, counting those still in the delta layer
+    public long edgeCount() {
+        return base.edgeCount() + newEdges;
+    }
+
+    public int pendingChanges() {
+        return deltaEntries;
+    }
+
+    private boolean bumpDelta(int p, int target) {
+        DeltaRow d = row(p);
+        if (d == null) d = addRow(p);
+        int slot = d.slotOf(target);
+        boolean isNew = false;
+        if (d.keys[slot] == -1) {
+            int w = baseWeight(p, target);
+            isNew = w == 0;
+            if (isNew) d.added++;
+            d.keys[slot] = target;
+            d.weights[slot] = w;
+            deltaEntries++;
+            if (++d.size * 2 > d.keys.length) {
+                d.grow();
+                slot = d.slotOf(target);
+            }
+        }
+        d.weights[slot]++;
+        d.byWeight = null;
+        return isNew;
+    }
+
+    private int baseWeight(int p, int target) {
+        return p < base.productCount() && target < base.productCount() ? base.weight(p, target) : 0;
+    }
+
+    private DeltaRow row(int p) {
+        int mask = rowKeys.length - 1;
+        for (int slot = mix(p) & mask; rowKeys[slot] != -1; slot = (slot + 1) & mask) {
+            if (rowKeys[slot] == p) return rows[slot];
+        }
+        return null;
+    }
+
+    private DeltaRow addRow(int p) {
+        if ((rowCount + 1) * 2 > rowKeys.length) {
+            int[] oldKeys = rowKeys;
+            DeltaRow[] oldRows = rows;
+            rowKeys = emptyKeys(oldKeys.length * 2);
+            rows = new DeltaRow[oldKeys.length * 2];
+            for (int s = 0; s < oldKeys.length; s++) if (oldKeys[s] != -1) putRow(oldKeys[s], oldRows[s]);
+        }
+        DeltaRow d = new DeltaRow();
+        putRow(p, d);
+        rowCount++;
+        return d;
+    }
+
+    private void putRow(int p, DeltaRow d) {
+        int mask = rowKeys.length - 1;
+        int slot = mix(p) & mask;
+        while (rowKeys[slot] != -1) slot = (slot + 1) & mask;
+        rowKeys[slot] = p;
+        rows[slot] = d;
+    }
+
+    private int idOf(String productId) {
+        int id = base.idOf(productId);
+        return id >= 0 ? id : newIds.getOrDefault(productId, -1);
+    }
+
+    private String productAt(int id) {
+        return id < base.productCount() ? base.productAt(id) : newProducts[id - base.productCount()];
+    }
+
+    private int intern(String productId) {
+        int id = idOf(productId);
+        if (id >= 0) return id;
+        if (newCount == newProducts.length) newProducts = Arrays.copyOf(newProducts, newCount * 2);
+        newProducts[newCount] = productId;
+        id = base.productCount() + newCount++;
+        newIds.put(productId, id);
+        return id;
+    }
+
+    // Binary search for target in the sorted entries [from, to)
+    private static int find(int[] targets, int from, int to, int target) {
+        return Arrays.binarySearch(targets, from, to, target);
+    }
+
+    private static int weightOf(long ranked) {
+        return Integer.MAX_VALUE - (int) (ranked >>> 32);
+    }
+
+    private static int[] emptyKeys(int size) {
+        int[] keys = new int[size];
+        Arrays.fill(keys, -1);
+        return keys;
+    }
+
+    private static int mix(int key) {
+        return (key * 0x9E3779B9) >>> 7;
+    }
+}
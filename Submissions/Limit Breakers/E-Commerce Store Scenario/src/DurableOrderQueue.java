@@ -0,0 +1,429 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// OrderQueue whose contents survive a crash or restart.
+// Every enqueue/dequeue is appended to an OrderJournal and only returns once it is fsynced;
+// concurrent callers share fsyncs through the journal's group commit. On open, the latest
+// snapshot is loaded and the journal written after it is replayed, so the queue comes back
+// in exactly the order it had, including VIP jumps and aging counters.
+//
+// Cancelled orders stay queued until processing skips them, so cancellations are journaled
+// too and a recovered order comes back already released. Stock reservations are not
+// journaled: recovered orders hold none until reserveRecovered() takes them again.
+//
+// Files in the directory, <gen> being the journal generation:
+//   snapshot-<gen>.snap  queue contents when journal <gen> was started
+//   journal-<gen>.log    events from then until journal <gen+1> was started
+// Compaction starts journal-<gen+1> and copies the queue under the lock, then lets the old
+// journal finish and writes snapshot-<gen+1> from the copy (tmp file, fsync, atomic rename)
+// outside it, and only then deletes older files. Recovery loads the latest snapshot and
+// replays every journal from its generation on, so a crash or a failed snapshot at any
+// point loses nothing. Automatic compaction runs on a background thread and is best-effort:
+// a failure is reported and retried later, never thrown at a producer.
+class DurableOrderQueue extends OrderQueue implements AutoCloseable {
+    static final long DEFAULT_COMPACT_AFTER = 1_000_000;
+
+    private static final int SNAPSHOT_MAGIC = 0x4F515331; // "OQS1"
+
+    private final Path dir;
+    private final long compactAfter; // journal records before a snapshot is taken
+    private final Object compacting = new Object(); // held for a whole compaction, before this
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "order-queue-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+    private OrderJournal journal;
+    private long generation;
+    private long nextCompactAt;      // journal records before compaction is tried again
+    private boolean compactQueued;
+    private boolean closed;
+
+    // Queue contents as of the start of a journal generation, copied under the lock
+    private static final class Contents {
+        final int[] bypassed;
+        final Order[][] orders;
+        final boolean[][] cancelled;
+
+        Contents(int lanes) {
+            bypassed = new int[lanes];
+            orders = new Order[lanes][];
+            cancelled = new boolean[lanes][];
+        }
+    }
+
+    private DurableOrderQueue(Path dir, Policy policy, int agingLimit, long compactAfter) {
+        super(policy, agingLimit);
+        if (compactAfter < 1) throw new IllegalArgumentException("compactAfter must be positive");
+        this.dir = dir;
+        this.compactAfter = compactAfter;
+        this.nextCompactAt = compactAfter;
+    }
+
+    public static DurableOrderQueue open(Path dir, Policy policy) throws IOException {
+        return open(dir, policy, DEFAULT_AGING_LIMIT, DEFAULT_COMPACT_AFTER);
+    }
+
+    public static DurableOrderQueue open(Path dir, Policy policy, int agingLimit, long compactAfter) throws IOException {
+        Files.createDirectories(dir);
+        DurableOrderQueue queue = new DurableOrderQueue(dir, policy, agingLimit, compactAfter);
+        queue.recover();
+        return queue;
+    }
+
+    @Override
+    public void enqueue(Order order) {
+        OrderJournal j;
+        long seq;
+        synchronized (this) {
+            j = journal;
+            seq = j.appendEnqueue(order); // log first: the order must never be visible but not logged
+            super.enqueue(order);
+            maybeCompact();
+        }
+        j.awaitDurable(seq); // outside the lock so other callers can join the same fsync
+    }
+
+    @Override
+    public Order dequeue() {
+        OrderJournal j;
+        long seq;
+        Order order;
+        synchronized (this) {
+            order = super.dequeue();
+            if (order == null) return null;
+            j = journal;
+            seq = j.appendDequeue();
+            maybeCompact();
+        }
+        j.awaitDurable(seq);
+        return order;
+    }
+
+    // Logs the whole batch under one lock and waits for a single fsync covering it
+    @Override
+    public int drainTo(Collection<? super Order> batch, int maxItems) {
+        OrderJournal j;
+        long seq = -1;
+        int n = 0;
+        synchronized (this) {
+            j = journal;
+            for (Order order; n < maxItems && (order = super.dequeue()) != null; n++) {
+                seq = j.appendDequeue();
+                batch.add(order);
+            }
+            if (n == 0) return 0;
+            maybeCompact();
+        }
+        j.awaitDurable(seq);
+        return n;
+    }
+
+    // Journals the cancellation so that recovery does not bring the order back as live
+    @Override
+    public void cancelled(Order order) {
+        OrderJournal j;
+        long seq;
+        synchronized (this) {
+            j = journal;
+            seq = j.appendCancel(order.orderId);
+            maybeCompact();
+        }
+        j.awaitDurable(seq);
+    }
+
+    // Takes stock again for every recovered order, lane by lane; call once after open() when
+    // processing fulfils against an Inventory. Orders it cannot cover stay unreserved, and
+    // Inventory.fulfil refuses them when they come up. Returns how many were reserved.
+    public synchronized int reserveRecovered(Inventory inventory) {
+        int[] reserved = {0};
+        for (int lane = 0; lane < laneCount(); lane++) {
+            forEachInLane(lane, order -> {
+                if (order.reservation() == Order.NOT_RESERVED && inventory.reserve(order)) reserved[0]++;
+            });
+        }
+        return reserved[0];
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return super.isEmpty();
+    }
+
+    @Override
+    public synchronized int size() {
+        return super.size();
+    }
+
+    @Override
+    public synchronized void showQueue() {
+        super.showQueue();
+    }
+
+    // Records in the current journal generation
+    public synchronized long journalRecords() {
+        return journal.records();
+    }
+
+    // fsyncs issued by the current journal generation
+    public synchronized long journalSyncs() {
+        return journal.syncs();
+    }
+
+    public synchronized long generation() {
+        return generation;
+    }
+
+    // Starts a fresh journal and snapshots the queue, then drops the older files. The queue
+    // lock is only held to switch journals and copy the queue; producers carry on while the
+    // old journal is synced and the snapshot written. If this fails the queue stays usable.
+    public void compact() throws IOException {
+        if (!compactNow()) throw new IllegalStateException("Queue closed");
+    }
+
+    // False if the queue was closed first
+    private boolean compactNow() throws IOException {
+        synchronized (compacting) {
+            OrderJournal old;
+            Contents contents;
+            long next;
+            synchronized (this) {
+                if (closed) return false;
+                next = generation + 1;
+                OrderJournal fresh = new OrderJournal(journalFile(next)); // on failure nothing has changed
+                contents = copyContents();
+                old = journal;
+                journal = fresh;
+                generation = next;
+                nextCompactAt = compactAfter;
+            }
+            old.close(); // the copy includes every record appended to it
+            writeSnapshot(next, contents);
+            deleteOlderThan(next);
+            return true;
+        }
+    }
+
+    // Waits for a running compaction, then makes the journal durable and closes it
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        synchronized (compacting) {
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+                journal.close();
+            }
+        }
+    }
+
+    // Only worth it once the journal is well past what a snapshot of the queue would hold.
+    // Called under the lock after a record is appended, so it only hands the work off.
+    private void maybeCompact() {
+        long records = journal.records();
+        if (compactQueued || records < nextCompactAt || records < 2L * super.size()) return;
+        compactQueued = true;
+        compactor.execute(() -> {
+            try {
+                compactNow();
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Order queue compaction failed, retrying after " + compactAfter + " more records: " + e);
+                synchronized (this) {
+                    nextCompactAt = journal.records() + compactAfter;
+                }
+            } finally {
+                synchronized (this) {
+                    compactQueued = false;
+                }
+            }
+        });
+    }
+
+    private Contents copyContents() {
+        Contents contents = new Contents(laneCount());
+        for (int lane = 0; lane < laneCount(); lane++) {
+            int[] count = {0};
+            forEachInLane(lane, o -> count[0]++);
+            Order[] orders = new Order[count[0]];
+            boolean[] cancelled = new boolean[count[0]];
+            int[] i = {0};
+            forEachInLane(lane, o -> {
+                cancelled[i[0]] = o.reservation() == Order.RELEASED;
+                orders[i[0]++] = o;
+            });
+            contents.bypassed[lane] = laneBypassed(lane);
+            contents.orders[lane] = orders;
+            contents.cancelled[lane] = cancelled;
+        }
+        return contents;
+    }
+
+    private void recover() throws IOException {
+        generation = latestSnapshotGeneration();
+        if (generation >= 0) {
+            readSnapshot(generation);
+        } else {
+            generation = 0;
+        }
+
+        long snapshotGeneration = generation;
+        HashMap<String, Order> queued = new HashMap<>(); // by id, for CANCEL records
+        for (int lane = 0; lane < laneCount(); lane++) forEachInLane(lane, o -> queued.put(o.orderId, o));
+        // every journal since the snapshot: more than one if a compaction did not finish
+        for (long gen = generation; Files.exists(journalFile(gen)); gen++) {
+            generation = gen;
+            OrderJournal.replay(journalFile(gen), new OrderJournal.Visitor() {
+                public void enqueue(Order order) {
+                    DurableOrderQueue.super.enqueue(order);
+                    queued.put(order.orderId, order);
+                }
+
+                public void dequeue() {
+                    Order order = DurableOrderQueue.super.dequeue();
+                    if (order != null) queued.remove(order.orderId, order);
+                }
+
+                public void cancel(String orderId) {
+                    Order order = queued.get(orderId);
+                    if (order != null) markCancelled(order);
+                }
+            });
+        }
+        journal = new OrderJournal(journalFile(generation));
+        deleteOlderThan(snapshotGeneration);
+    }
+
+    // snapshot = int magic, byte policy, int agingLimit, int laneCount,
+    //            per lane: int bypassed, int count,
+    //                      count x (utf orderId, byte tier, int lines, lines x (utf productId, int quantity),
+    //                               boolean cancelled)
+    //            then int crc32c of everything before it
+    private void writeSnapshot(long gen, Contents contents) throws IOException {
+        Path tmp = dir.resolve("snapshot-" + gen + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), new CRC32C());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeByte(policy().ordinal());
+            out.writeInt(agingLimit());
+            out.writeInt(contents.orders.length);
+            for (int lane = 0; lane < contents.orders.length; lane++) {
+                Order[] orders = contents.orders[lane];
+                out.writeInt(contents.bypassed[lane]);
+                out.writeInt(orders.length);
+                for (int i = 0; i < orders.length; i++) {
+                    writeOrder(out, orders[i]);
+                    out.writeBoolean(contents.cancelled[lane][i]);
+                }
+            }
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(tmp, snapshotFile(gen), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void readSnapshot(long gen) throws IOException {
+        Path file = snapshotFile(gen);
+        try (CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16), new CRC32C())) {
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != SNAPSHOT_MAGIC) throw new IOException("Not an order queue snapshot: " + file);
+            Policy stored = Policy.values()[in.readByte()];
+            int storedAging = in.readInt();
+            if (stored != policy() || storedAging != agingLimit()) {
+                throw new IOException("Snapshot " + file + " was written for policy " + stored + " (aging " + storedAging
+                        + "), queue opened with " + policy() + " (aging " + agingLimit() + ")");
+            }
+            int lanes = in.readInt();
+            for (int lane = 0; lane < lanes; lane++) {
+                int bypassed = in.readInt();
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    Order order = readOrder(in);
+                    if (in.readBoolean()) markCancelled(order);
+                    restoreLane(lane, order, bypassed);
+                }
+            }
+            int expected = (int) checked.getChecksum().getValue();
+            if (in.readInt() != expected) throw new IOException("Corrupt order queue snapshot: " + file);
+        }
+    }
+
+    // A recovered order holds no reservation, so cancelling it only marks it for skipping
+    private static void markCancelled(Order order) {
+        order.moveReservation(Order.NOT_RESERVED, Order.RELEASED);
+    }
+
+    private static void writeOrder(DataOutputStream out, Order order) throws IOException {
+        out.writeUTF(order.orderId);
+        out.writeByte(order.tier.ordinal());
+        out.writeInt(order.lineCount());
+        for (int i = 0; i < order.lineCount(); i++) {
+            out.writeUTF(order.productId(i));
+            out.writeInt(order.quantity(i));
+        }
+    }
+
+    private static Order readOrder(DataInputStream in) throws IOException {
+        String orderId = in.readUTF();
+        OrderTier tier = OrderTier.values()[in.readByte()];
+        int lines = in.readInt();
+        String[] productIds = new String[lines];
+        int[] quantities = new int[lines];
+        for (int i = 0; i < lines; i++) {
+            productIds[i] = in.readUTF();
+            quantities[i] = in.readInt();
+        }
+        return new Order(orderId, tier, productIds, quantities);
+    }
+
+    private long latestSnapshotGeneration() throws IOException {
+        long latest = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "snapshot-*.snap")) {
+            for (Path f : files) latest = Math.max(latest, generationOf(f));
+        }
+        return latest;
+    }
+
+    // Leftovers from before the last compaction, including half-written snapshot tmp files
+    private void deleteOlderThan(long gen) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "{journal-*.log,snapshot-*.snap,snapshot-*.tmp}")) {
+            for (Path f : files) {
+                long g = generationOf(f);
+                if (g < gen || (g >= 0 && f.toString().endsWith(".tmp"))) Files.deleteIfExists(f);
+            }
+        }
+    }
+
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(name.indexOf('-') + 1, name.lastIndexOf('.')));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private Path journalFile(long gen) {
+        return dir.resolve("journal-" + gen + ".log");
+    }
+
+    private Path snapshotFile(long gen) {
+        return dir.resolve("snapshot-" + gen + ".snap");
+    }
+}
@@ -0,0 +1,241 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Read-optimized co-purchase graph in compressed sparse row (CSR) form.
+// Product ids are interned to ints; the neighbors of product p are entries
+//   rowStart(p) .. rowEnd(p)  with target(i) and co-purchase count weight(i)
+// sorted by target id, so one pair's weight is a binary search and two rows merge in one
+// pass. byWeight(i) lists the same entries heaviest first, so top-K is the first K of them.
+// Every directed edge costs 12 bytes (int target, int count, int rank): no entry objects,
+// no boxed values, no String references per edge.
+//
+// A FrozenRecommendationGraph never changes after it is built, so it can be shared with
+// any number of readers. DeltaRecommendationGraph takes co-purchases on top of one and
+// compacts them into a new one.
+class FrozenRecommendationGraph {
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] weights;
+    private final int[] ranked;    // entry indexes, each row heaviest first
+
+    // Interned product ids
+    private final StringIntMap ids;
+    private final String[] products;
+    private final int productCount;
+
+    // Takes ownership of the arrays
+    FrozenRecommendationGraph(String[] products, int productCount, StringIntMap ids,
+                              int[] offsets, int[] targets, int[] weights, int[] ranked) {
+        this.products = products;
+        this.productCount = productCount;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.ranked = ranked;
+    }
+
+    // Rows of a ranked mutable graph are copied as they are; neighbor order is kept
+    static FrozenRecommendationGraph of(List<String> productIds, List<String[]> rankedNeighbors, List<int[]> rankedWeights) {
+        int n = productIds.size();
+        StringIntMap ids = new StringIntMap(n);
+        String[] products = new String[n];
+        for (int i = 0; i < n; i++) {
+            products[i] = productIds.get(i);
+            ids.put(products[i], i);
+        }
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) offsets[i + 1] = offsets[i] + rankedNeighbors.get(i).length;
+        int[] targets = new int[offsets[n]];
+        int[] weights = new int[offsets[n]];
+        int[] ranked = new int[offsets[n]];
+        long[] packed = new long[16];
+        for (int i = 0; i < n; i++) {
+            String[] row = rankedNeighbors.get(i);
+            int[] w = rankedWeights.get(i);
+            if (packed.length < row.length) packed = new long[row.length];
+            // (target, rank) packed so one primitive sort puts the row in target order
+            for (int j = 0; j < row.length; j++) packed[j] = ((long) ids.getOrDefault(row[j], -1) << 32) | j;
+            Arrays.sort(packed, 0, row.length);
+            int start = offsets[i];
+            for (int j = 0; j < row.length; j++) {
+                int rank = (int) packed[j];
+                targets[start + j] = (int) (packed[j] >>> 32);
+                weights[start + j] = w[rank];
+                ranked[start + rank] = start + j;
+            }
+        }
+        return new FrozenRecommendationGraph(products, n, ids, offsets, targets, weights, ranked);
+    }
+
+    // Bulk construction straight from co-purchase pairs, without a mutable graph in between:
+    // pairs are kept as two int arrays and turned into CSR with a counting sort. The built
+    // graph takes over the builder's id table, so a builder builds once.
+    static class Builder {
+        private final StringIntMap ids = new StringIntMap(1 << 16);
+        private String[] products = new String[1 << 10];
+        private int productCount;
+        private int[] from = new int[1 << 10];
+        private int[] to = new int[1 << 10];
+        private int pairs;
+
+        public Builder addCoPurchase(String productA, String productB) {
+            if (from == null) throw new IllegalStateException("graph already built");
+            if (productA.equals(productB)) return this;
+            if (pairs == from.length) {
+                from = Arrays.copyOf(from, pairs * 2);
+                to = Arrays.copyOf(to, pairs * 2);
+            }
+            from[pairs] = intern(productA);
+            to[pairs] = intern(productB);
+            pairs++;
+            return this;
+        }
+
+        public FrozenRecommendationGraph build() {
+            if (from == null) throw new IllegalStateException("graph already built");
+            int n = productCount;
+            // both directions of every pair, bucketed by source
+            int[] offsets = new int[n + 1];
+            for (int i = 0; i < pairs; i++) {
+                offsets[from[i] + 1]++;
+                offsets[to[i] + 1]++;
+            }
+            for (int i = 0; i < n; i++) offsets[i + 1] += offsets[i];
+            int[] fill = Arrays.copyOf(offsets, n);
+            int[] raw = new int[offsets[n]];
+            for (int i = 0; i < pairs; i++) {
+                raw[fill[from[i]]++] = to[i];
+                raw[fill[to[i]]++] = from[i];
+            }
+            from = to = null;
+
+            // per row: count repeated targets, then rank the distinct ones by count
+            int[] compactOffsets = new int[n + 1];
+            int[] targets = raw; // compacted in place, rows only ever shrink
+            int[] weights = new int[raw.length];
+            int[] ranked = new int[raw.length];
+            long[] packed = new long[16];
+            int out = 0;
+            for (int p = 0; p < n; p++) {
+                int start = offsets[p], end = offsets[p + 1];
+                Arrays.sort(raw, start, end);
+                compactOffsets[p] = out;
+                for (int i = start; i < end; ) {
+                    int j = i;
+                    while (j < end && raw[j] == raw[i]) j++;
+                    targets[out] = raw[i];
+                    weights[out++] = j - i;
+                    i = j;
+                }
+                int rowStart = compactOffsets[p], distinct = out - rowStart;
+                if (packed.length < distinct) packed = new long[distinct];
+                // count in the high bits, inverted so an ascending sort puts the largest first;
+                // equal counts stay in target order
+                for (int i = 0; i < distinct; i++) packed[i] = ((long) (Integer.MAX_VALUE - weights[rowStart + i]) << 32) | i;
+                Arrays.sort(packed, 0, distinct);
+                for (int i = 0; i < distinct; i++) ranked[rowStart + i] = rowStart + (int) packed[i];
+            }
+            compactOffsets[n] = out;
+            return new FrozenRecommendationGraph(products, n, ids, compactOffsets,
+                    Arrays.copyOf(targets, out), Arrays.copyOf(weights, out), Arrays.copyOf(ranked, out));
+        }
+
+        private int intern(String productId) {
+            int id = ids.getOrDefault(productId, -1);
+            if (id >= 0) return id;
+            if (productCount == products.length) products = Arrays.copyOf(products, productCount * 2);
+            products[productCount] = productId;
+            ids.put(productId, productCount);
+            return productCount++;
+        }
+    }
+
+    // Best k neighbors by co-purchase count: the first k entries of the row's ranking
+    public List<String> recommendProducts(String productId, int k) {
+        int p = ids.getOrDefault(productId, -1);
+        if (p < 0) return Collections.emptyList();
+        int start = offsets[p], end = Math.min(offsets[p + 1], start + k);
+        List<String> result = new ArrayList<>(Math.max(0, end - start));
+        for (int i = start; i < end; i++) result.add(products[targets[ranked[i]]]);
+        return result;
+    }
+
+    public int weight(String productA, String productB) {
+        int a = ids.getOrDefault(productA, -1), b = ids.getOrDefault(productB, -1);
+        return (a < 0 || b < 0) ? 0 : weight(a, b);
+    }
+
+    // Co-purchase count of p with target, 0 if none: binary search of p's row
+    int weight(int p, int target) {
+        int i = indexOf(p, target);
+        return i < 0 ? 0 : weights[i];
+    }
+
+    // Entry index of target in p's row, or -1
+    int indexOf(int p, int target) {
+        int lo = offsets[p], hi = offsets[p + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (targets[mid] < target) lo = mid + 1;
+            else if (targets[mid] > target) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    public int productCount() {
+        return productCount;
+    }
+
+    public long edgeCount() {
+        return targets.length / 2;
+    }
+
+    // Directed entries, twice the edges
+    public int entryCount() {
+        return targets.length;
+    }
+
+    // Interned id of a product, or -1
+    int idOf(String productId) {
+        return ids.getOrDefault(productId, -1);
+    }
+
+    String productAt(int id) {
+        return products[id];
+    }
+
+    // First entry of product p's row
+    int rowStart(int p) {
+        return offsets[p];
+    }
+
+    // One past the last entry of product p's row
+    int rowEnd(int p) {
+        return offsets[p + 1];
+    }
+
+    int target(int entry) {
+        return targets[entry];
+    }
+
+    int weight(int entry) {
+        return weights[entry];
+    }
+
+    // Entry holding rank (i - rowStart(p)) in p's row, for i in rowStart(p) .. rowEnd(p)
+    int byWeight(int i) {
+        return ranked[i];
+    }
+
+    // Copies rows from .. to-1 into another graph's arrays, starting at entry at
+    void copyRows(int from, int to, int[] toTargets, int[] toWeights, int[] toRanked, int at) {
+        int start = offsets[from], n = offsets[to] - start;
+        System.arraycopy(targets, start, toTargets, at, n);
+        System.arraycopy(weights, start, toWeights, at, n);
+        for (int i = 0; i < n; i++) toRanked[at + i] = ranked[start + i] - start + at;
+    }
+}
@@ -0,0 +1,246 @@
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Sellable stock per product, reserved when an order is placed so a flash sale cannot sell
+// units it does not have. Stock starts from product.stockQuantity (track/trackAll); from then
+// on this is the authoritative count and the catalog field is not updated.
+//
+// Each SKU is a CAS counter. A SKU whose counter keeps losing CAS races (many buyers of one
+// product at once) turns hot: its stock is spread over striped cells, each on its own cache
+// line, and a buyer takes from the cell its thread hashes to, then from the others, the way
+// LongAdder spreads increments. A counter never goes below zero, so stock is never oversold.
+// Only when no single counter holds the quantity does a reservation lock the SKU and gather
+// it from several counters, returning what it gathered if the total is still short.
+//
+// reserve(order) takes every line or none. The reservation state lives on the order itself,
+// so no table shared by all buyers sits on the reservation path, and it ends exactly once,
+// by CAS: fulfil(order) when the order ships, or release(order) when it is cancelled, which
+// returns its stock. Whoever processes orders calls fulfil first and skips the order on
+// false: it was cancelled while queued, or never reserved. Reservations live in memory only;
+// DurableOrderQueue.reserveRecovered takes them again after a restart.
+class Inventory {
+    private static final AtomicLongFieldUpdater<Sku> BASE = AtomicLongFieldUpdater.newUpdater(Sku.class, "base");
+    private static final int PAD = 16;             // longs per cell: 128 bytes, two cache lines
+    private static final int PROMOTE_AFTER = 64;   // failed CASes on base before a SKU turns hot
+    static final int DEFAULT_MAX_STRIPES = Math.max(2, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2));
+
+    private static final class Sku {
+        final ReentrantLock lock = new ReentrantLock(); // promotion and gathering across counters
+        volatile long base;              // all stock until the SKU turns hot
+        volatile AtomicLongArray cells;  // once hot: cell i at (i + 1) * PAD, so no two share a line
+        int contention;                  // failed CASes on base; racy, only a hint
+
+        Sku(long stock) {
+            this.base = stock;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Sku> skus = new ConcurrentHashMap<>();
+    private final int maxStripes;
+    private final LongAdder open = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder hotSkus = new LongAdder();
+
+    public Inventory() {
+        this(DEFAULT_MAX_STRIPES);
+    }
+
+    // maxStripes: cells per hot SKU, a power of two; 1 keeps every SKU a single counter
+    public Inventory(int maxStripes) {
+        if (maxStripes < 1 || Integer.bitCount(maxStripes) != 1) throw new IllegalArgumentException("maxStripes must be a power of two");
+        this.maxStripes = maxStripes;
+    }
+
+    public void track(product p) {
+        track(p.productId, p.stockQuantity);
+    }
+
+    public void trackAll(ProductLists catalog) {
+        catalog.forEach(this::track);
+    }
+
+    // Starts tracking a product, or adds the units to its stock if already tracked
+    public void track(String productId, long stock) {
+        if (stock < 0) throw new IllegalArgumentException("stock must be >= 0");
+        Sku existing = skus.putIfAbsent(productId, new Sku(stock));
+        if (existing != null) give(existing, stock);
+    }
+
+    public void restock(String productId, long units) {
+        if (units < 0) throw new IllegalArgumentException("units must be >= 0");
+        Sku sku = skus.get(productId);
+        if (sku == null) throw new IllegalArgumentException("Unknown product: " + productId);
+        give(sku, units);
+    }
+
+    // Stripes the product's stock now instead of waiting for contention, e.g. before a flash sale
+    public void markHot(String productId) {
+        Sku sku = skus.get(productId);
+        if (sku == null) throw new IllegalArgumentException("Unknown product: " + productId);
+        if (maxStripes > 1) promote(sku);
+    }
+
+    // Units not reserved; exact only while no reservation is in flight. -1 if not tracked
+    public long available(String productId) {
+        Sku sku = skus.get(productId);
+        if (sku == null) return -1;
+        long total = sku.base;
+        AtomicLongArray cells = sku.cells;
+        if (cells != null) {
+            for (int i = PAD; i < cells.length(); i += PAD) total += cells.get(i);
+        }
+        return total;
+    }
+
+    // Reserves every line of the order or none of them. False when a product is short or not
+    // tracked; throws IllegalStateException if the order was reserved before.
+    public boolean reserve(Order order) {
+        if (order.reservation() != Order.NOT_RESERVED) throw new IllegalStateException("Order " + order.orderId + " was already reserved");
+        int lines = order.lineCount();
+        for (int i = 0; i < lines; i++) {
+            if (order.quantity(i) <= 0) throw new IllegalArgumentException("Order " + order.orderId + " has a line of quantity " + order.quantity(i));
+        }
+        Sku[] taken = new Sku[lines];
+        for (int i = 0; i < lines; i++) {
+            Sku sku = skus.get(order.productId(i));
+            if (sku == null || !take(sku, order.quantity(i))) {
+                for (int j = 0; j < i; j++) give(taken[j], order.quantity(j));
+                rejected.increment();
+                return false;
+            }
+            taken[i] = sku;
+        }
+        if (!order.moveReservation(Order.NOT_RESERVED, Order.RESERVED)) {
+            for (int i = 0; i < lines; i++) give(taken[i], order.quantity(i));
+            throw new IllegalStateException("Order " + order.orderId + " was already reserved");
+        }
+        open.increment();
+        return true;
+    }
+
+    // Ends the reservation as sold. False if the order holds none: it was cancelled, or it
+    // never reserved stock here, so it must not ship.
+    public boolean fulfil(Order order) {
+        if (!order.moveReservation(Order.RESERVED, Order.FULFILLED)) return false;
+        open.decrement();
+        return true;
+    }
+
+    // Cancels the order's reservation and returns its stock; false if it holds none
+    // (never reserved, already shipped or already cancelled)
+    public boolean release(Order order) {
+        if (!order.moveReservation(Order.RESERVED, Order.RELEASED)) return false;
+        for (int i = 0; i < order.lineCount(); i++) give(skus.get(order.productId(i)), order.quantity(i));
+        open.decrement();
+        return true;
+    }
+
+    // Orders holding stock: reserved, neither fulfilled nor released yet
+    public long reservedOrders() {
+        return open.sum();
+    }
+
+    // Orders turned away for lack of stock
+    public long rejectedOrders() {
+        return rejected.sum();
+    }
+
+    public long hotSkus() {
+        return hotSkus.sum();
+    }
+
+    public void showStock() {
+        System.out.println("\nAvailable Stock:");
+        if (skus.isEmpty()) System.out.println("  (None tracked)");
+        for (Map.Entry<String, Sku> e : skus.entrySet()) {
+            System.out.println("  " + e.getKey() + " → " + available(e.getKey()) + (e.getValue().cells != null ? " (hot)" : ""));
+        }
+        System.out.println("  " + reservedOrders() + " order(s) holding reservations");
+    }
+
+    private boolean take(Sku sku, long qty) {
+        while (true) {
+            AtomicLongArray cells = sku.cells;
+            if (cells == null) {
+                long v = sku.base;
+                if (v < qty) return gather(sku, qty);
+                if (BASE.compareAndSet(sku, v, v - qty)) return true;
+                if (++sku.contention >= PROMOTE_AFTER && maxStripes > 1) promote(sku);
+                continue;
+            }
+            int stripes = cells.length() / PAD - 1;
+            int home = homeStripe(stripes);
+            for (int i = 0; i < stripes; i++) { // home cell first, then the others
+                int idx = ((home + i) & (stripes - 1)) * PAD + PAD;
+                for (long v = cells.get(idx); v >= qty; v = cells.get(idx)) {
+                    if (cells.compareAndSet(idx, v, v - qty)) return true;
+                }
+            }
+            return gather(sku, qty);
+        }
+    }
+
+    // No single counter had qty: collect it from all of them under the SKU lock, or put back
+    // what was collected
+    private boolean gather(Sku sku, long qty) {
+        sku.lock.lock();
+        try {
+            long need = qty;
+            for (long v = sku.base; need > 0 && v > 0; v = sku.base) {
+                long n = Math.min(v, need);
+                if (BASE.compareAndSet(sku, v, v - n)) need -= n;
+            }
+            AtomicLongArray cells = sku.cells;
+            if (cells != null) {
+                for (int idx = PAD; need > 0 && idx < cells.length(); idx += PAD) {
+                    for (long v = cells.get(idx); need > 0 && v > 0; v = cells.get(idx)) {
+                        long n = Math.min(v, need);
+                        if (cells.compareAndSet(idx, v, v - n)) need -= n;
+                    }
+                }
+            }
+            if (need == 0) return true;
+            give(sku, qty - need);
+            return false;
+        } finally {
+            sku.lock.unlock();
+        }
+    }
+
+    private void give(Sku sku, long units) {
+        if (units == 0) return;
+        AtomicLongArray cells = sku.cells;
+        if (cells == null) {
+            BASE.addAndGet(sku, units);
+        } else {
+            cells.addAndGet(homeStripe(cells.length() / PAD - 1) * PAD + PAD, units);
+        }
+    }
+
+    // Spreads the SKU's stock over maxStripes cells. Units are briefly in neither place while
+    // they move; a reservation that misses them falls through to gather(), which waits here.
+    private void promote(Sku sku) {
+        sku.lock.lock();
+        try {
+            if (sku.cells != null) return;
+            AtomicLongArray cells = new AtomicLongArray((maxStripes + 1) * PAD);
+            sku.cells = cells;
+            long units = BASE.getAndSet(sku, 0);
+            for (int i = 0; i < maxStripes; i++) {
+                cells.addAndGet(i * PAD + PAD, units / maxStripes + (i < units % maxStripes ? 1 : 0));
+            }
+            hotSkus.increment();
+        } finally {
+            sku.lock.unlock();
+        }
+    }
+
+    private static int homeStripe(int stripes) {
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & (stripes - 1);
+    }
+}
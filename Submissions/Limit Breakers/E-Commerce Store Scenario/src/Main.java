@@ -1,3 +1,6 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Scanner;
 
 public class Main {
@@ -9,26 +12,48 @@ public class Main {
         ProductLists carousel = new ProductLists();
         ShoppingCart cart = new ShoppingCart();
         CustomerBST customerTree = new CustomerBST();
-        RecommendationGraph recGraph = new RecommendationGraph();
+        RecommendationGraph recGraph = new RecommendationGraph(1024);
 
-        // Preload some products
-        product p1 = new product("P001", "Coffee Mug", 9.99, true, "Kitchen", 20, 0.1f, 4.8f);
-        product p2 = new product("P002", "Bluetooth Speaker", 29.99, false, "Electronics", 15, 0.0f, 4.5f);
-        product p3 = new product("P003", "Notebook", 4.99, true, "Stationery", 50, 0.05f, 4.2f);
-        product p4 = new product("P004", "Water Bottle", 7.49, false, "Fitness", 25, 0.0f, 4.3f);
-        product p5 = new product("P005", "Wireless Mouse", 19.99, true, "Electronics", 30, 0.15f, 4.6f);
+        if (args.length > 0) {
+            // Bulk-load the catalog file given on the command line
+            try {
+                int loaded = CatalogLoader.loadInto(carousel, Path.of(args[0]));
+                System.out.println("Loaded " + loaded + " products from " + args[0]);
+            } catch (IOException | IllegalArgumentException e) {
+                System.out.println("Could not load catalog: " + e.getMessage());
+            }
+        } else {
+            // Preload some products
+            product p1 = new product("P001", "Coffee Mug", 9.99, true, "Kitchen", 20, 0.1f, 4.8f);
+            product p2 = new product("P002", "Bluetooth Speaker", 29.99, false, "Electronics", 15, 0.0f, 4.5f);
+            product p3 = new product("P003", "Notebook", 4.99, true, "Stationery", 50, 0.05f, 4.2f);
+            product p4 = new product("P004", "Water Bottle", 7.49, false, "Fitness", 25, 0.0f, 4.3f);
+            product p5 = new product("P005", "Wireless Mouse", 19.99, true, "Electronics", 30, 0.15f, 4.6f);
+
+            carousel.addToEnd(p1);
+            carousel.addToEnd(p2);
+            carousel.addToFront(p3);
+            carousel.addToEnd(p4);
+            carousel.addToEnd(p5);
+        }
+
+        // Stock is reserved when an order is placed
+        Inventory inventory = new Inventory();
+        inventory.trackAll(carousel);
+        cart.setInventory(inventory);
 
-        carousel.addToEnd(p1);
-        carousel.addToEnd(p2);
-        carousel.addToFront(p3);
-        carousel.addToEnd(p4);
-        carousel.addToEnd(p5);
+        // Cart totals are priced from the catalog and kept current as the cart changes
+        cart.setPriceBook(new PriceBook(carousel));
 
         // Preload recommendation graph
         recGraph.addRelation("P001", "P002");
         recGraph.addRelation("P001", "P005");
         recGraph.addRelation("P003", "P004");
 
+        // Processed orders feed the recommendation graph from here on
+        CoPurchaseGraphBuilder coPurchases = new CoPurchaseGraphBuilder(recGraph).start();
+        cart.setOrderListener(coPurchases);
+
         // Preload customers
         customerTree.addCustomer(new CustomerDB("C001", "Ahmed", "ahmed@gmail.com"));
         customerTree.addCustomer(new CustomerDB("C002", "Sayeel", "sayeel@gmail.com"));
@@ -57,6 +82,7 @@ public class Main {
                         System.out.println("1. Display Products");
                         System.out.println("2. Remove Product");
                         System.out.println("3. Move Product to Front");
+                        System.out.println("4. Show Stock");
                         System.out.println("0. Back");
                         System.out.print("Enter choice: ");
                         prodChoice = sc.nextInt();
@@ -76,6 +102,9 @@ public class Main {
                                 String mid = sc.nextLine();
                                 carousel.moveToFront(mid);
                                 break;
+                            case 4:
+                                inventory.showStock();
+                                break;
                             case 0:
                                 System.out.println("Returning to Main Menu...");
                                 break;
@@ -94,6 +123,8 @@ public class Main {
                         System.out.println("3. Update Quantity");
                         System.out.println("4. Show Cart");
                         System.out.println("5. Undo Last Action");
+                        System.out.println("6. Undo Several Actions");
+                        System.out.println("7. Redo");
                         System.out.println("0. Back");
                         System.out.print("Enter: ");
                         cartChoice = sc.nextInt();
@@ -106,7 +137,11 @@ public class Main {
                                 System.out.print("Enter Quantity: ");
                                 int qty = sc.nextInt();
                                 sc.nextLine();
-                                cart.addProduct(pid, qty);
+                                try {
+                                    cart.addProduct(pid, qty);
+                                } catch (IllegalArgumentException e) {
+                                    System.out.println(e.getMessage());
+                                }
                                 break;
                             case 2:
                                 System.out.print("Enter Product ID to remove: ");
@@ -119,7 +154,11 @@ public class Main {
                                 System.out.print("Enter new Quantity: ");
                                 int newQty = sc.nextInt();
                                 sc.nextLine();
-                                cart.updateQuantity(pid, newQty);
+                                try {
+                                    cart.updateQuantity(pid, newQty);
+                                } catch (IllegalArgumentException e) {
+                                    System.out.println(e.getMessage());
+                                }
                                 break;
                             case 4:
                                 cart.showCart();
@@ -127,6 +166,18 @@ public class Main {
                             case 5:
                                 cart.undoLastAction();
                                 break;
+                            case 6:
+                                System.out.print("How many actions? ");
+                                int steps = sc.nextInt();
+                                sc.nextLine();
+                                cart.undoActions(steps);
+                                break;
+                            case 7:
+                                System.out.print("How many actions? ");
+                                steps = sc.nextInt();
+                                sc.nextLine();
+                                cart.redoActions(steps);
+                                break;
                             case 0:
                                 System.out.println("Returning...");
                                 break;
@@ -143,6 +194,8 @@ public class Main {
                         System.out.println("1. Place Order");
                         System.out.println("2. Process Next Order");
                         System.out.println("3. Show Order Queue");
+                        System.out.println("4. Process All Queued Orders");
+                        System.out.println("5. Cancel Order");
                         System.out.println("0. Back");
                         System.out.print("Enter: ");
                         orderChoice = sc.nextInt();
@@ -150,7 +203,7 @@ public class Main {
 
                         switch (orderChoice) {
                             case 1:
-                                if(cart.pID.isEmpty()){
+                                if(cart.isEmpty()){
                                     System.out.println("Cart is Empty");
                                     break;
                                 }
@@ -167,6 +220,13 @@ public class Main {
                             case 3:
                                 cart.showOrderQueue();
                                 break;
+                            case 4:
+                                cart.processOrders(Integer.MAX_VALUE);
+                                break;
+                            case 5:
+                                System.out.print("Enter Order ID to cancel: ");
+                                cart.cancelOrder(sc.nextLine());
+                                break;
                             case 0:
                                 System.out.println("Returning...");
                                 break;
@@ -185,6 +245,10 @@ public class Main {
                         System.out.println("3. Promote Hot Customer");
                         System.out.println("4. Delete Customer");
                         System.out.println("5. Find Customer");
+                        System.out.println("6. Find Customer by Email");
+                        System.out.println("7. Search Customers by Name");
+                        System.out.println("8. Record Purchase");
+                        System.out.println("9. Top Buyers");
                         System.out.println("0. Back");
                         System.out.print("Enter: ");
                         custChoice = sc.nextInt();
@@ -218,6 +282,34 @@ public class Main {
                                 cid = sc.nextLine();
                                 System.out.println(customerTree.findCustomer(cid));
                                 break;
+                            case 6:
+                                System.out.print("Enter Email: ");
+                                email = sc.nextLine();
+                                System.out.println(customerTree.indexes().findByEmail(email));
+                                break;
+                            case 7:
+                                System.out.print("Enter Name (or start of it): ");
+                                cname = sc.nextLine();
+                                for (CustomerDB c : customerTree.indexes().findByNamePrefix(cname, 20)) System.out.println("  " + c);
+                                break;
+                            case 8:
+                                System.out.print("Enter Customer ID: ");
+                                cid = sc.nextLine();
+                                CustomerDB buyer = customerTree.findCustomer(cid);
+                                if (buyer == null) {
+                                    System.out.println("Customer not found.");
+                                } else {
+                                    buyer.incrementPurchases();
+                                    System.out.println(buyer + ", Rank=" + customerTree.indexes().purchaseRank(buyer));
+                                }
+                                break;
+                            case 9:
+                                System.out.print("How many: ");
+                                int k = sc.nextInt();
+                                sc.nextLine();
+                                int rank = 1;
+                                for (CustomerDB c : customerTree.indexes().topBuyers(k)) System.out.println("  " + (rank++) + ". " + c);
+                                break;
                             case 0:
                                 System.out.println("Returning...");
                                 break;
@@ -228,6 +320,7 @@ public class Main {
                     break;
 
                 case 5:
+                    awaitCoPurchases(coPurchases);
                     recGraph.showGraph();
                     break;
 
@@ -237,7 +330,11 @@ public class Main {
                     System.out.print("How many recommendations? ");
                     int k = sc.nextInt();
                     sc.nextLine();
-                    System.out.println("Recommended: " + recGraph.recommendProducts(pid, k));
+                    awaitCoPurchases(coPurchases);
+                    List<String> recommended = recGraph.recommendProducts(pid, k);
+                    // few direct relations: widen to products two hops away
+                    if (recommended.size() < k) recommended = recGraph.recommendTwoHop(pid, k, 20);
+                    System.out.println("Recommended: " + recommended);
                     break;
 
                 case 0:
@@ -250,5 +347,15 @@ public class Main {
         }
 
         sc.close();
+        coPurchases.close();
+    }
+
+    // This thread is the only producer, so after a flush the graph is quiet and safe to read
+    private static void awaitCoPurchases(CoPurchaseGraphBuilder coPurchases) {
+        try {
+            coPurchases.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 }
@@ -0,0 +1,25 @@
+import java.util.Collection;
+
+// What a cart checks out into and fulfilment takes from: OrderQueue (single-threaded, with a
+// choice of tier policy), DurableOrderQueue, or ConcurrentOrderQueue for many threads.
+interface OrderChannel {
+    void enqueue(Order order);
+
+    // Next order by the channel's priority rules, or null when none is queued
+    Order dequeue();
+
+    // Moves up to maxItems orders into batch, in dequeue order; returns how many
+    int drainTo(Collection<? super Order> batch, int maxItems);
+
+    boolean isEmpty();
+
+    int size();
+
+    // Prints the queued orders, highest tier first
+    void showQueue();
+
+    // Told that a queued order was cancelled. The order stays queued and is skipped when it
+    // comes up; a durable channel records the cancellation so recovery keeps skipping it.
+    default void cancelled(Order order) {
+    }
+}
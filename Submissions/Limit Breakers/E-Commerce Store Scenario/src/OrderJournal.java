@@ -0,0 +1,313 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+// Append-only journal of order queue events with group commit.
+// Appenders encode records into a shared buffer and get back a sequence number; a single
+// flusher thread writes whatever has accumulated and fsyncs once for the whole batch, then
+// wakes every appender whose record is now durable. While one fsync runs, the next batch
+// fills up, so the fsync cost is shared by all concurrent writers.
+//
+// Record layout: int payloadLength, int crc32c(payload), payload
+//   payload = byte type, then for ENQUEUE: order (see writeOrder); for CANCEL: utf orderId
+class OrderJournal implements AutoCloseable {
+    static final byte ENQUEUE = 1;
+    static final byte DEQUEUE = 2;
+    static final byte CANCEL = 3;
+
+    private static final int HEADER = 8;
+
+    // Callback for replay
+    interface Visitor {
+        void enqueue(Order order);
+
+        void dequeue();
+
+        void cancel(String orderId);
+    }
+
+    private final FileChannel channel;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasPending = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final Thread flusher;
+
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer writing = ByteBuffer.allocate(1 << 16);
+    private long appendedSeq;
+    private long durableSeq;
+    private long records;
+    private long syncs;
+    private boolean closed;
+    private IOException failure;
+
+    public OrderJournal(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        channel.position(channel.size());
+        flusher = new Thread(this::flushLoop, "order-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Reads every intact record in order. A torn or corrupt tail (crash mid-write) ends the
+    // replay and is cut off so new records append after the last good one.
+    // The file is read in large chunks and records are decoded in place, so replay costs
+    // one read syscall per megabyte rather than two per record.
+    public static long replay(Path file, Visitor visitor) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long position = 0; // file offset of the next record
+            long count = 0;
+            ByteBuffer chunk = ByteBuffer.allocate(1 << 20);
+            chunk.limit(0);
+            CRC32C crc = new CRC32C();
+            while (position + HEADER <= size) {
+                if (chunk.remaining() < HEADER && !fill(in, chunk, position, size)) break;
+                int length = chunk.getInt(chunk.position());
+                int expected = chunk.getInt(chunk.position() + 4);
+                if (length <= 0 || position + HEADER + length > size) break;
+                if (chunk.remaining() < HEADER + length) {
+                    if (chunk.capacity() < HEADER + length) {
+                        chunk = ByteBuffer.allocate(HEADER + length).limit(0);
+                    }
+                    if (!fill(in, chunk, position, size)) break;
+                }
+                int start = chunk.position() + HEADER;
+                crc.reset();
+                crc.update(chunk.array(), start, length);
+                if ((int) crc.getValue() != expected) break;
+
+                ByteBuffer payload = chunk.duplicate();
+                payload.position(start).limit(start + length);
+                byte type = payload.get();
+                if (type == ENQUEUE) visitor.enqueue(readOrder(payload));
+                else if (type == DEQUEUE) visitor.dequeue();
+                else if (type == CANCEL) visitor.cancel(getString(payload));
+                else break;
+                chunk.position(start + length);
+                position += HEADER + length;
+                count++;
+            }
+            if (position < size) in.truncate(position);
+            return count;
+        }
+    }
+
+    public long appendEnqueue(Order order) {
+        lock.lock();
+        try {
+            int start = beginRecord(ENQUEUE);
+            try {
+                writeOrder(order);
+            } catch (RuntimeException e) {
+                pending.position(start); // drop the partial record; nothing after it is lost
+                throw e;
+            }
+            return endRecord(start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long appendDequeue() {
+        lock.lock();
+        try {
+            return endRecord(beginRecord(DEQUEUE));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long appendCancel(String orderId) {
+        lock.lock();
+        try {
+            int start = beginRecord(CANCEL);
+            try {
+                putString(orderId);
+            } catch (RuntimeException e) {
+                pending.position(start);
+                throw e;
+            }
+            return endRecord(start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Blocks until the record with this sequence number has been fsynced
+    public void awaitDurable(long seq) {
+        lock.lock();
+        try {
+            while (durableSeq < seq && failure == null) flushed.awaitUninterruptibly();
+            if (durableSeq < seq) throw new UncheckedIOException("Journal write failed", failure);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long records() {
+        return records;
+    }
+
+    public long syncs() {
+        lock.lock();
+        try {
+            return syncs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            long last = appendedSeq;
+            closed = true;
+            hasPending.signal();
+            while (durableSeq < last && failure == null) flushed.awaitUninterruptibly();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) throw failure;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long target;
+            lock.lock();
+            try {
+                while (pending.position() == 0 && !closed) hasPending.awaitUninterruptibly();
+                if (pending.position() == 0) return; // closed and drained
+                ByteBuffer full = pending;
+                pending = writing;
+                writing = full;
+                target = appendedSeq;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                writing.flip();
+                while (writing.hasRemaining()) channel.write(writing);
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+            writing.clear();
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durableSeq = target;
+                    syncs++;
+                }
+                flushed.signalAll();
+                if (error != null) return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // A record is only complete after endRecord; an append that fails in between must reset
+    // pending to start, or the flusher would write a header-less record that ends replay
+    private int beginRecord(byte type) {
+        if (closed) throw new IllegalStateException("Journal closed");
+        ensureCapacity(HEADER + 1);
+        int start = pending.position();
+        pending.position(start + HEADER);
+        pending.put(type);
+        return start;
+    }
+
+    private long endRecord(int start) {
+        int end = pending.position();
+        int length = end - start - HEADER;
+        CRC32C crc = new CRC32C();
+        crc.update(pending.array(), start + HEADER, length);
+        pending.putInt(start, length);
+        pending.putInt(start + 4, (int) crc.getValue());
+        records++;
+        hasPending.signal();
+        return ++appendedSeq;
+    }
+
+    // order = utf orderId, byte tier, int lineCount, lineCount x (utf productId, int quantity)
+    private void writeOrder(Order order) {
+        putString(order.orderId);
+        ensureCapacity(5);
+        pending.put((byte) order.tier.ordinal());
+        pending.putInt(order.lineCount());
+        for (int i = 0; i < order.lineCount(); i++) {
+            putString(order.productId(i));
+            ensureCapacity(4);
+            pending.putInt(order.quantity(i));
+        }
+    }
+
+    static Order readOrder(ByteBuffer in) {
+        String orderId = getString(in);
+        OrderTier tier = OrderTier.values()[in.get()];
+        int lines = in.getInt();
+        String[] productIds = new String[lines];
+        int[] quantities = new int[lines];
+        for (int i = 0; i < lines; i++) {
+            productIds[i] = getString(in);
+            quantities[i] = in.getInt();
+        }
+        return new Order(orderId, tier, productIds, quantities);
+    }
+
+    private void putString(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) throw new IllegalArgumentException("Journal string too long: " + bytes.length + " bytes");
+        ensureCapacity(2 + bytes.length);
+        pending.putShort((short) bytes.length);
+        pending.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (pending.remaining() >= extra) return;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + extra));
+        pending.flip();
+        bigger.put(pending);
+        pending = bigger;
+    }
+
+    // Refills the chunk starting at file offset position; false if nothing more could be read
+    private static boolean fill(FileChannel in, ByteBuffer chunk, long position, long size) throws IOException {
+        chunk.clear();
+        int want = (int) Math.min(chunk.capacity(), size - position);
+        chunk.limit(want);
+        while (chunk.hasRemaining()) {
+            int n = in.read(chunk, position + chunk.position());
+            if (n < 0) break;
+        }
+        chunk.flip();
+        return chunk.hasRemaining();
+    }
+}
@@ -0,0 +1,144 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters for the concurrent order pipeline: queue depth per tier, enqueue/dequeue/process
+// rates and queue wait-time percentiles. All recording paths are lock-free.
+// Wait times go into a log-linear histogram (8 sub-buckets per power of two), so
+// percentiles are accurate to within ~12.5%.
+class OrderPipelineMetrics {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final LongAdder[] enqueued = new LongAdder[OrderTier.values().length];
+    private final LongAdder[] dequeued = new LongAdder[OrderTier.values().length];
+    private final LongAdder processed = new LongAdder();
+    private final AtomicLongArray waitHistogram = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final long startedAt = System.nanoTime();
+
+    // Point-in-time copy of the counters; rates come from the difference of two snapshots
+    static final class Snapshot {
+        final long at;
+        final long enqueued;
+        final long dequeued;
+        final long processed;
+
+        Snapshot(long at, long enqueued, long dequeued, long processed) {
+            this.at = at;
+            this.enqueued = enqueued;
+            this.dequeued = dequeued;
+            this.processed = processed;
+        }
+
+        double enqueueRate(Snapshot earlier) {
+            return perSecond(enqueued - earlier.enqueued, earlier);
+        }
+
+        double dequeueRate(Snapshot earlier) {
+            return perSecond(dequeued - earlier.dequeued, earlier);
+        }
+
+        double processRate(Snapshot earlier) {
+            return perSecond(processed - earlier.processed, earlier);
+        }
+
+        private double perSecond(long delta, Snapshot earlier) {
+            long elapsed = at - earlier.at;
+            return elapsed <= 0 ? 0 : delta * 1e9 / elapsed;
+        }
+    }
+
+    public OrderPipelineMetrics() {
+        for (int i = 0; i < enqueued.length; i++) {
+            enqueued[i] = new LongAdder();
+            dequeued[i] = new LongAdder();
+        }
+    }
+
+    void recordEnqueue(OrderTier tier) {
+        enqueued[tier.ordinal()].increment();
+    }
+
+    void recordDequeue(OrderTier tier, long waitNanos) {
+        dequeued[tier.ordinal()].increment();
+        recordWait(waitNanos);
+    }
+
+    // count orders of one tier taken at once; each one's wait goes through recordWait
+    void recordDequeues(OrderTier tier, int count) {
+        dequeued[tier.ordinal()].add(count);
+    }
+
+    void recordWait(long waitNanos) {
+        waitHistogram.incrementAndGet(bucket(Math.max(0, waitNanos)));
+    }
+
+    void recordProcessed() {
+        processed.increment();
+    }
+
+    void recordProcessed(int count) {
+        processed.add(count);
+    }
+
+    public long depth() {
+        long depth = 0;
+        for (OrderTier tier : OrderTier.values()) depth += depth(tier);
+        return depth;
+    }
+
+    public long depth(OrderTier tier) {
+        return enqueued[tier.ordinal()].sum() - dequeued[tier.ordinal()].sum();
+    }
+
+    public Snapshot snapshot() {
+        long in = 0, out = 0;
+        for (int i = 0; i < enqueued.length; i++) {
+            in += enqueued[i].sum();
+            out += dequeued[i].sum();
+        }
+        return new Snapshot(System.nanoTime(), in, out, processed.sum());
+    }
+
+    // Rates since the metrics were created
+    public Snapshot origin() {
+        return new Snapshot(startedAt, 0, 0, 0);
+    }
+
+    // Queue wait time (enqueue -> dequeue) at the given percentile, 0 < p <= 100
+    public long waitPercentileNanos(double p) {
+        long total = 0;
+        for (int i = 0; i < waitHistogram.length(); i++) total += waitHistogram.get(i);
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(total * p / 100.0);
+        long seen = 0;
+        for (int i = 0; i < waitHistogram.length(); i++) {
+            seen += waitHistogram.get(i);
+            if (seen >= rank) return bucketUpperBound(i);
+        }
+        return bucketUpperBound(waitHistogram.length() - 1);
+    }
+
+    public String summary() {
+        Snapshot now = snapshot();
+        Snapshot origin = origin();
+        return String.format("depth=%d (EXPRESS=%d VIP=%d STANDARD=%d) enq/s=%.0f deq/s=%.0f done/s=%.0f wait p50=%.1fus p99=%.1fus p99.9=%.1fus",
+                depth(), depth(OrderTier.EXPRESS), depth(OrderTier.VIP), depth(OrderTier.STANDARD),
+                now.enqueueRate(origin), now.dequeueRate(origin), now.processRate(origin),
+                waitPercentileNanos(50) / 1e3, waitPercentileNanos(99) / 1e3, waitPercentileNanos(99.9) / 1e3);
+    }
+
+    // Values below SUB_BUCKETS map linearly; above, by power of two plus the next 3 bits
+    private static int bucket(long v) {
+        if (v < SUB_BUCKETS) return (int) v;
+        int exponent = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long bucketUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
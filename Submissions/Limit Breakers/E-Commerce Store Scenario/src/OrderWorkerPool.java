@@ -0,0 +1,127 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Fixed pool of fulfilment workers draining a ConcurrentOrderQueue in parallel.
+// Orders are handed out in tier priority, so an EXPRESS or VIP order is always picked up
+// before any queued STANDARD order; completion order across workers is not guaranteed.
+//
+// A pool either hands the handler one order per call, or batches of up to batchSize, so
+// work that is per call rather than per order (a stock check per distinct product, one log
+// line, one downstream request) is paid once per batch. A worker drains whatever is queued
+// and waits up to maxWait only when nothing is, so a lone order is never held back to fill
+// a batch.
+class OrderWorkerPool implements AutoCloseable {
+    static final long DEFAULT_MAX_WAIT_MILLIS = 50;
+
+    private final ConcurrentOrderQueue queue;
+    private final int batchSize;
+    private final long maxWaitMillis;
+    private final Consumer<Order> orderHandler;        // one order per call, or null
+    private final Consumer<List<Order>> batchHandler;  // batches, when orderHandler is null
+    private final ExecutorService workers;
+    private final int workerCount;
+    private volatile boolean stopping;
+
+    public OrderWorkerPool(ConcurrentOrderQueue queue, int workerCount, Consumer<Order> handler) {
+        this(queue, workerCount, 1, DEFAULT_MAX_WAIT_MILLIS, handler, null);
+    }
+
+    public OrderWorkerPool(ConcurrentOrderQueue queue, int workerCount, int batchSize, Consumer<List<Order>> handler) {
+        this(queue, workerCount, batchSize, DEFAULT_MAX_WAIT_MILLIS, handler);
+    }
+
+    // The handler gets a read-only list that is only valid during the call
+    public OrderWorkerPool(ConcurrentOrderQueue queue, int workerCount, int batchSize, long maxWaitMillis,
+                           Consumer<List<Order>> handler) {
+        this(queue, workerCount, batchSize, maxWaitMillis, null, handler);
+    }
+
+    private OrderWorkerPool(ConcurrentOrderQueue queue, int workerCount, int batchSize, long maxWaitMillis,
+                            Consumer<Order> orderHandler, Consumer<List<Order>> batchHandler) {
+        if (workerCount < 1) throw new IllegalArgumentException("workerCount must be positive");
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be positive");
+        if (maxWaitMillis < 0) throw new IllegalArgumentException("maxWaitMillis must be >= 0");
+        this.queue = queue;
+        this.batchSize = batchSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.orderHandler = orderHandler;
+        this.batchHandler = batchHandler;
+        this.workerCount = workerCount;
+        AtomicInteger ids = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, r -> {
+            Thread t = new Thread(r, "order-worker-" + ids.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public OrderWorkerPool start() {
+        for (int i = 0; i < workerCount; i++) workers.execute(this::work);
+        return this;
+    }
+
+    public OrderPipelineMetrics metrics() {
+        return queue.metrics();
+    }
+
+    private void work() {
+        ArrayList<Order> batch = new ArrayList<>(Math.min(batchSize, 4096)); // batch mode only
+        List<Order> view = Collections.unmodifiableList(batch);
+        try {
+            while (true) {
+                // a single order is a plain poll, which is cheaper than draining a batch of one
+                Order order = null;
+                int n;
+                if (orderHandler != null) {
+                    order = queue.poll(maxWaitMillis, TimeUnit.MILLISECONDS);
+                    n = order == null ? 0 : 1;
+                } else {
+                    batch.clear();
+                    n = queue.drainTo(batch, batchSize, maxWaitMillis, TimeUnit.MILLISECONDS);
+                }
+                if (n == 0) {
+                    if (stopping) return; // drained
+                    continue;
+                }
+                try {
+                    if (order != null) orderHandler.accept(order);
+                    else batchHandler.accept(view);
+                } catch (RuntimeException e) {
+                    System.out.println((order != null ? "Order " + order.orderId : "Batch of " + n + " orders from " + batch.get(0).orderId) + " failed: " + e);
+                }
+                queue.metrics().recordProcessed(n);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Workers stop once everything already queued has been processed; does not wait
+    public void shutdown() {
+        stopping = true;
+        workers.shutdown();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return workers.awaitTermination(timeout, unit);
+    }
+
+    // Shuts down and waits up to 30 s for the queue to drain, then interrupts the workers.
+    // An interrupt while waiting stops the workers at once and is passed on to the caller.
+    @Override
+    public void close() {
+        shutdown();
+        try {
+            if (!awaitTermination(30, TimeUnit.SECONDS)) workers.shutdownNow();
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
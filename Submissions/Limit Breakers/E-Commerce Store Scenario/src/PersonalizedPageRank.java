@@ -0,0 +1,230 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Personalized PageRank over a FrozenRecommendationGraph, estimated with random walks with
+// restart: each walk starts at a seed product (one product, or the items of a cart weighted
+// by quantity), follows co-purchase edges chosen in proportion to their weight and stops with
+// probability RESTART at every step. How often a product is visited estimates its PageRank
+// personalized to the seeds, so it also finds products several hops away.
+//
+// Walks are independent, so they are split across a fork/join pool; every leaf counts its
+// visits locally and the counts are summed on join. Each query has a time budget: leaves stop
+// starting new walks at the deadline and the result reports how many walks were completed,
+// so callers can trade accuracy for latency under load.
+//
+// A FrozenRecommendationGraph never changes, so the walk tables built here stay valid for it;
+// build a new PersonalizedPageRank for each newly published graph.
+class PersonalizedPageRank {
+    static final double RESTART = 0.15;
+    private static final int WALKS_PER_LEAF = 2048;
+    private static final int MAX_STEPS = 64; // cap for walks trapped in a dense cluster
+
+    private final FrozenRecommendationGraph graph;
+    private final float[] cumulative; // running weight sum within each row, for weighted steps
+    private final ForkJoinPool pool;
+
+    static final class Result {
+        final List<String> products;
+        final int walks;         // walks actually completed
+        final boolean truncated; // the time budget ran out before every requested walk
+
+        Result(List<String> products, int walks, boolean truncated) {
+            this.products = products;
+            this.walks = walks;
+            this.truncated = truncated;
+        }
+
+        @Override
+        public String toString() {
+            return products + " (" + walks + " walks" + (truncated ? ", time-bounded" : "") + ")";
+        }
+    }
+
+    public PersonalizedPageRank(FrozenRecommendationGraph graph) {
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    public PersonalizedPageRank(FrozenRecommendationGraph graph, ForkJoinPool pool) {
+        this.graph = graph;
+        this.pool = pool;
+        cumulative = new float[graph.entryCount()];
+        for (int p = 0; p < graph.productCount(); p++) {
+            float sum = 0;
+            for (int i = graph.rowStart(p); i < graph.rowEnd(p); i++) {
+                sum += graph.weight(i);
+                cumulative[i] = sum;
+            }
+        }
+    }
+
+    public Result recommend(String productId, int k, int walks, long budgetMillis) {
+        int id = graph.idOf(productId);
+        if (id < 0) return new Result(Collections.emptyList(), 0, false);
+        return run(new int[]{id}, new float[]{1}, k, walks, budgetMillis);
+    }
+
+    // Seeds are the cart's products, weighted by quantity; products already in the cart are
+    // never recommended back
+    public Result recommendForCart(ShoppingCart cart, int k, int walks, long budgetMillis) {
+        int[][] seeds = {new int[4]};
+        float[][] seedWeights = {new float[4]};
+        int[] count = {0};
+        cart.forEachItem((productId, qty) -> {
+            int id = graph.idOf(productId);
+            if (id < 0 || qty <= 0) return;
+            if (count[0] == seeds[0].length) {
+                seeds[0] = Arrays.copyOf(seeds[0], count[0] * 2);
+                seedWeights[0] = Arrays.copyOf(seedWeights[0], count[0] * 2);
+            }
+            seeds[0][count[0]] = id;
+            seedWeights[0][count[0]++] = qty;
+        });
+        if (count[0] == 0) return new Result(Collections.emptyList(), 0, false);
+        return run(Arrays.copyOf(seeds[0], count[0]), Arrays.copyOf(seedWeights[0], count[0]), k, walks, budgetMillis);
+    }
+
+    private Result run(int[] seeds, float[] seedWeights, int k, int walks, long budgetMillis) {
+        float[] seedCumulative = new float[seedWeights.length];
+        float sum = 0;
+        for (int i = 0; i < seedWeights.length; i++) seedCumulative[i] = sum += seedWeights[i];
+
+        long deadline = System.nanoTime() + budgetMillis * 1_000_000L;
+        Walks task = new Walks(seeds, seedCumulative, walks, deadline, new SplittableRandom(seeds[0] * 31L + walks));
+        VisitCounts visits = pool.invoke(task);
+        for (int seed : seeds) visits.remove(seed);
+        return new Result(visits.top(k, graph), visits.walks, visits.walks < walks);
+    }
+
+    private final class Walks extends RecursiveTask<VisitCounts> {
+        private static final long serialVersionUID = 1L; // ForkJoinTask is Serializable; Walks is never serialized
+
+        private final int[] seeds;
+        private final float[] seedCumulative;
+        private final int walks;
+        private final long deadline;
+        private final SplittableRandom random;
+
+        Walks(int[] seeds, float[] seedCumulative, int walks, long deadline, SplittableRandom random) {
+            this.seeds = seeds;
+            this.seedCumulative = seedCumulative;
+            this.walks = walks;
+            this.deadline = deadline;
+            this.random = random;
+        }
+
+        @Override
+        protected VisitCounts compute() {
+            // past the deadline, stop splitting too: budgeted calls may ask for far more walks
+            if (System.nanoTime() >= deadline) return new VisitCounts();
+            if (walks > WALKS_PER_LEAF) {
+                int half = walks / 2;
+                Walks left = new Walks(seeds, seedCumulative, half, deadline, random.split());
+                Walks right = new Walks(seeds, seedCumulative, walks - half, deadline, random.split());
+                left.fork();
+                VisitCounts counts = right.compute();
+                return counts.addAll(left.join());
+            }
+
+            VisitCounts counts = new VisitCounts();
+            for (int w = 0; w < walks; w++) {
+                if ((w & 15) == 0 && System.nanoTime() >= deadline) break;
+                int node = seeds[pick(seedCumulative, 0, seeds.length, random.nextDouble() * seedCumulative[seeds.length - 1])];
+                for (int step = 0; step < MAX_STEPS && random.nextDouble() >= RESTART; step++) {
+                    int start = graph.rowStart(node), end = graph.rowEnd(node);
+                    if (start == end) break; // no relations: the walk restarts
+                    double r = random.nextDouble() * cumulative[end - 1];
+                    node = graph.target(pick(cumulative, start, end, r));
+                    counts.increment(node);
+                }
+                counts.walks++;
+            }
+            return counts;
+        }
+    }
+
+    // First index in [from, to) whose running sum exceeds r
+    private static int pick(float[] running, int from, int to, double r) {
+        int lo = from, hi = to - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (running[mid] > r) hi = mid;
+            else lo = mid + 1;
+        }
+        return lo;
+    }
+
+    // Open-addressing product id -> visit count, local to one fork/join leaf
+    private static final class VisitCounts {
+        private int[] keys = new int[1024];
+        private int[] counts = new int[1024];
+        private int size;
+        int walks;
+
+        VisitCounts() {
+            Arrays.fill(keys, -1);
+        }
+
+        void increment(int key) {
+            add(key, 1);
+        }
+
+        void add(int key, int n) {
+            int mask = keys.length - 1;
+            int slot = (key * 0x9E3779B9) >>> 7 & mask;
+            while (keys[slot] != -1 && keys[slot] != key) slot = (slot + 1) & mask;
+            if (keys[slot] == -1) {
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    counts[slot] = n;
+                    grow();
+                    return;
+                }
+            }
+            counts[slot] += n;
+        }
+
+        void remove(int key) {
+            // only used once at the end, so zeroing the count is enough
+            int mask = keys.length - 1;
+            for (int slot = (key * 0x9E3779B9) >>> 7 & mask; keys[slot] != -1; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    counts[slot] = 0;
+                    return;
+                }
+            }
+        }
+
+        VisitCounts addAll(VisitCounts other) {
+            for (int i = 0; i < other.keys.length; i++) if (other.keys[i] != -1) add(other.keys[i], other.counts[i]);
+            walks += other.walks;
+            return this;
+        }
+
+        List<String> top(int k, FrozenRecommendationGraph graph) {
+            // (count, id) packed so one primitive sort ranks by count, then by id
+            long[] packed = new long[size];
+            int n = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != -1 && counts[i] > 0) packed[n++] = ((long) counts[i] << 32) | keys[i];
+            }
+            Arrays.sort(packed, 0, n);
+            List<String> result = new ArrayList<>(Math.min(k, n));
+            for (int i = n - 1; i >= 0 && result.size() < k; i--) result.add(graph.productAt((int) packed[i]));
+            return result;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys, oldCounts = counts;
+            keys = new int[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            Arrays.fill(keys, -1);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) if (oldKeys[i] != -1) add(oldKeys[i], oldCounts[i]);
+        }
+    }
+}
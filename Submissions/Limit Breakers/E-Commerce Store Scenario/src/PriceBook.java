@@ -0,0 +1,129 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+// Catalog prices as primitive columns, for pricing carts and orders without touching the
+// product objects. Each product is a row: list price and discounted unit price in cents,
+// so totals are exact long sums instead of accumulated doubles. The discounted price is
+// rounded to the cent once per unit, here, and every total is unit price x quantity.
+//
+// Readers never lock: the columns are an immutable snapshot behind one volatile field, and
+// a price change publishes a new snapshot (copying the columns). Repricing is meant to be
+// occasional; change many prices in one setPrices call. Carts compare the snapshot they
+// were priced against with current() to notice a repricing.
+class PriceBook {
+    // One immutable version of the columns
+    static final class Prices {
+        final StringIntMap rows;   // productId -> row
+        final long[] listCents;
+        final long[] unitCents;    // after discount
+
+        Prices(StringIntMap rows, long[] listCents, long[] unitCents) {
+            this.rows = rows;
+            this.listCents = listCents;
+            this.unitCents = unitCents;
+        }
+
+        int size() {
+            return rows.size();
+        }
+    }
+
+    private volatile Prices prices = new Prices(new StringIntMap(), new long[0], new long[0]);
+
+    public PriceBook() {
+    }
+
+    public PriceBook(ProductLists catalog) {
+        ArrayList<product> all = new ArrayList<>(catalog.size());
+        catalog.forEach(all::add);
+        setPrices(all);
+    }
+
+    public Prices current() {
+        return prices;
+    }
+
+    public int size() {
+        return prices.size();
+    }
+
+    public void setPrice(product p) {
+        setPrices(List.of(p));
+    }
+
+    // Adds new products and reprices known ones, publishing one new snapshot. The products
+    // are read in one pass, so any Iterable works; nothing is published if one is invalid.
+    public synchronized void setPrices(Iterable<product> products) {
+        Prices old = prices;
+        int size = old.size();
+        int room = products instanceof Collection ? size + ((Collection<?>) products).size() : size;
+        StringIntMap rows = old.rows; // shared with readers, so copied before the first new product
+        long[] listCents = Arrays.copyOf(old.listCents, room);
+        long[] unitCents = Arrays.copyOf(old.unitCents, room);
+        for (product p : products) {
+            if (p.productPrice < 0 || !(p.discount >= 0 && p.discount <= 1)) {
+                throw new IllegalArgumentException("Bad price for " + p.productId + ": " + p.productPrice + " discount " + p.discount);
+            }
+            int row = rows.getOrDefault(p.productId, -1);
+            if (row < 0) {
+                if (rows == old.rows) {
+                    rows = new StringIntMap(room + 1);
+                    for (int s = old.rows.nextSlot(0); s >= 0; s = old.rows.nextSlot(s + 1)) rows.put(old.rows.keyAt(s), old.rows.valueAt(s));
+                }
+                if (size == listCents.length) {
+                    listCents = Arrays.copyOf(listCents, Math.max(16, size * 2));
+                    unitCents = Arrays.copyOf(unitCents, listCents.length);
+                }
+                rows.put(p.productId, row = size++);
+            }
+            listCents[row] = Math.round(p.productPrice * 100);
+            unitCents[row] = listCents[row] - Math.round(listCents[row] * (double) p.discount);
+        }
+        if (size < listCents.length) { // room for products that were already priced, or listed twice
+            listCents = Arrays.copyOf(listCents, size);
+            unitCents = Arrays.copyOf(unitCents, size);
+        }
+        prices = new Prices(rows, listCents, unitCents);
+    }
+
+    // Discounted price of one unit in cents, or -1 if the product has no price
+    public long unitCents(String productId) {
+        Prices p = prices;
+        int row = p.rows.getOrDefault(productId, -1);
+        return row < 0 ? -1 : p.unitCents[row];
+    }
+
+    public long listCents(String productId) {
+        Prices p = prices;
+        int row = p.rows.getOrDefault(productId, -1);
+        return row < 0 ? -1 : p.listCents[row];
+    }
+
+    // Order total at today's prices; lines without a price count as 0
+    public long totalCents(Order order) {
+        Prices p = prices;
+        int n = order.lineCount();
+        long[] unit = new long[n];
+        long[] qty = new long[n];
+        for (int i = 0; i < n; i++) {
+            int row = p.rows.getOrDefault(order.productId(i), -1);
+            unit[i] = row < 0 ? 0 : p.unitCents[row];
+            qty[i] = order.quantity(i);
+        }
+        return sumOfProducts(unit, qty, n);
+    }
+
+    // unit[0..n) . qty[0..n). Kept to a plain counted loop over two long arrays with one
+    // accumulator, the shape C2's superword pass turns into SIMD multiply-adds.
+    static long sumOfProducts(long[] unit, long[] qty, int n) {
+        long sum = 0;
+        for (int i = 0; i < n; i++) sum += unit[i] * qty[i];
+        return sum;
+    }
+
+    static String format(long cents) {
+        return (cents < 0 ? "-" : "") + Math.abs(cents) / 100 + "." + String.format("%02d", Math.abs(cents) % 100);
+    }
+}
@@ -1,12 +1,25 @@
+import java.util.HashMap;
+import java.util.function.Consumer;
+
 public class ProductLists{
+    private static final int FEATURED_SLOTS = 3;
+
     private productNode head;  // first node
     private productNode tail;  // last node
+    private HashMap<String, productNode> index = new HashMap<>(); // productId -> node, O(1) lookup
     int size=0;
 
+    // Featured-only chain threaded through the same nodes, kept in carousel order
+    private productNode featuredHead;
+    private productNode featuredTail;
+    private int featuredCount;
+
     private class productNode{
         product obj;
         productNode next;
         productNode prev;
+        productNode nextFeatured;
+        productNode prevFeatured;
 
         public productNode(product obj) {
             this.obj = obj;
@@ -23,86 +36,140 @@ public class ProductLists{
         return size;
     }
 
+    public int featuredCount() {
+        return featuredCount;
+    }
+
     public void addToFront(product obj) {
-        productNode newNode =new productNode(obj);
+        linkFirst(newIndexedNode(obj));
+        maintainFeaturedConstraint();
+    }
+
+    public void addToEnd(product obj) {
+        linkLast(newIndexedNode(obj));
+        maintainFeaturedConstraint();
+    }
+
+    // Bulk load: links every product at the end and restores the featured slots once
+    public void addAllToEnd(Iterable<product> products) {
+        for (product obj : products) {
+            linkLast(newIndexedNode(obj));
+        }
+        maintainFeaturedConstraint();
+    }
+
+    // Carousel order
+    public void forEach(Consumer<product> action) {
+        for (productNode temp = head; temp != null; temp = temp.next) action.accept(temp.obj);
+    }
+
+    public product findProduct(String productId) {
+        productNode node = index.get(productId);
+        return (node != null) ? node.obj : null;
+    }
+
+    public product removeProduct(String productId){
+        productNode temp = index.remove(productId);
+        if (temp == null) return null;
+        unlink(temp);
+        maintainFeaturedConstraint();
+        return temp.obj;
+    }
+
+    public void moveToFront(String productId){
+        productNode temp = index.get(productId);
+        if (temp == null || temp == head) return;
+
+        // relink the same node at the head, the index entry stays valid
+        unlink(temp);
+        linkFirst(temp);
+        maintainFeaturedConstraint();
+    }
+
+    private productNode newIndexedNode(product obj) {
+        if (index.containsKey(obj.productId)) {
+            throw new IllegalArgumentException("Duplicate product id: " + obj.productId);
+        }
+        productNode newNode = new productNode(obj);
+        index.put(obj.productId, newNode);
+        return newNode;
+    }
+
+    private void linkFirst(productNode node) {
         if (head == null) {
-            head =newNode;
-            tail =newNode;
+            head = node;
+            tail = node;
         } else {
-            newNode.next =head;
-            head.prev =newNode;
-            head =newNode;
+            node.next = head;
+            head.prev = node;
+            head = node;
         }
         size++;
-        maintainFeaturedConstraint();
-    }
 
-    public void addToEnd(product obj) {
-        productNode newNode =new productNode(obj);
+        if (node.obj.isFeatured) {
+            node.nextFeatured = featuredHead;
+            if (featuredHead != null) featuredHead.prevFeatured = node;
+            else featuredTail = node;
+            featuredHead = node;
+            featuredCount++;
+        }
+    }
 
+    private void linkLast(productNode node) {
         if (tail == null) {
-            head =newNode;
-            tail =newNode;
+            head = node;
+            tail = node;
         } else {
-            tail.next =newNode;
-            newNode.prev =tail;
-            tail =newNode;
+            tail.next = node;
+            node.prev = tail;
+            tail = node;
         }
         size++;
-        maintainFeaturedConstraint();
-    }
 
-    public product removeProduct(String productId){
-        productNode temp=head;
-        while (temp != null) {
-            if (temp.obj.productId.equals(productId)) {
-                product removedProduct = temp.obj;
-                if (temp == head) {
-                    head = head.next;
-                    if (head != null) head.prev = null;
-                }
-                else if (temp == tail) {
-                    tail = tail.prev;
-                    tail.next = null;
-                }
-                else {
-                    temp.prev.next = temp.next;
-                    temp.next.prev = temp.prev;
-                }
-                size--;
-                maintainFeaturedConstraint();
-                return removedProduct;
-            }
-            temp = temp.next;
+        if (node.obj.isFeatured) {
+            node.prevFeatured = featuredTail;
+            if (featuredTail != null) featuredTail.nextFeatured = node;
+            else featuredHead = node;
+            featuredTail = node;
+            featuredCount++;
         }
-        return null;
     }
 
-    public void moveToFront(String productId){
-        productNode temp=head;
-        while (temp != null) {
-            if (temp.obj.productId.equals(productId)) {
-                if (temp == head) {
-                    return;
-                }
-                product removedProduct = temp.obj;
-
-                if (temp == tail) {
-                    tail = tail.prev;
-                    tail.next = null;
-                }
-                else {
-                    temp.prev.next = temp.next;
-                    temp.next.prev = temp.prev;
-                }
-                size--;
-                addToFront(removedProduct);
-                return;
-            }
-            temp = temp.next;
+    // Detaches a node from both chains in O(1); the index is left to the caller
+    private void unlink(productNode node) {
+        if (node.prev != null) node.prev.next = node.next;
+        else head = node.next;
+        if (node.next != null) node.next.prev = node.prev;
+        else tail = node.prev;
+        node.prev = null;
+        node.next = null;
+        size--;
+
+        if (node.obj.isFeatured) {
+            if (node.prevFeatured != null) node.prevFeatured.nextFeatured = node.nextFeatured;
+            else featuredHead = node.nextFeatured;
+            if (node.nextFeatured != null) node.nextFeatured.prevFeatured = node.prevFeatured;
+            else featuredTail = node.prevFeatured;
+            node.prevFeatured = null;
+            node.nextFeatured = null;
+            featuredCount--;
         }
     }
 
+    // Splices a featured node directly before target in the carousel. Every featured node
+    // between target and the moved node is skipped over, so featured order is unchanged.
+    private void moveFeaturedBefore(productNode node, productNode target) {
+        node.prev.next = node.next;
+        if (node.next != null) node.next.prev = node.prev;
+        else tail = node.prev;
+
+        node.prev = target.prev;
+        node.next = target;
+        if (target.prev != null) target.prev.next = node;
+        else head = node;
+        target.prev = node;
+    }
+
     public String validateCarousel() {
         productNode slow = head;
         productNode fast = head;
@@ -133,25 +200,21 @@ public class ProductLists{
         prev.next = null;
     }
 
+    // The first min(3, featuredCount) positions must hold featured products. The featured
+    // chain is in carousel order, so slot i is correct iff it holds the i-th featured node;
+    // at most FEATURED_SLOTS splices are needed, independent of the carousel size.
     private void maintainFeaturedConstraint() {
+        int slots = Math.min(FEATURED_SLOTS, featuredCount);
         productNode temp = head;
-        int count = 0;
-
-        while (temp != null && count < 3) {
-            if (!temp.obj.isFeatured) {
-                productNode search = temp.next;
-                while (search != null && !search.obj.isFeatured) {
-                    search = search.next;
-                }
-
-                if (search != null) {
-                    product toMaintain = search.obj;
-                    removeProduct(toMaintain.productId);
-                    addToFront(toMaintain);
-                }
+        productNode expected = featuredHead;
+
+        for (int count = 0; count < slots; count++) {
+            if (temp != expected) {
+                moveFeaturedBefore(expected, temp);
+                temp = expected;
             }
             temp = temp.next;
-            count++;
+            expected = expected.nextFeatured;
         }
     }
 
@@ -166,14 +229,14 @@ public class ProductLists{
 class product{
     String productId;
     String productName;
-    Double productPrice;
+    double productPrice;
     boolean isFeatured;
     String productCategory;
     int stockQuantity;
     float discount;
     float rating;
 
-    public product(String productId, String productName, Double productPrice, boolean isFeatured, String productCategory, int stockQuantity, float discount, float rating) {
+    public product(String productId, String productName, double productPrice, boolean isFeatured, String productCategory, int stockQuantity, float discount, float rating) {
         this.productId = productId;
         this.productName = productName;
         this.productPrice = productPrice;
@@ -1,27 +1,335 @@
 import java.util.*;
 
+// Co-purchase graph: the edge weight between two products counts how often they were bought
+// together. Every product keeps its neighbors ranked by weight (highest first), so
+// recommendProducts(id, k) just reads the first k entries: O(k), no copy of the neighbor set.
+// Weights only grow by one per co-purchase, which lets the ranking be repaired in
+// O(log degree): the bumped neighbor swaps with the first neighbor of its old weight.
+//
+// Optionally the results for up to cacheCapacity recently requested products are cached.
+// The entry lives in the product's Neighbors, so a hit costs the same map lookup as before
+// but no copy, and addRelation invalidates exactly the two products whose ranking it changed.
+// Eviction is CLOCK (second chance), an LRU approximation where a hit only sets a flag
+// instead of relinking list nodes. Cached lists are unmodifiable.
 class RecommendationGraph {
-    private Map<String, Set<String>> adjacencyList = new HashMap<>();
+    private Map<String, Neighbors> adjacencyList = new HashMap<>();
+    private long edges;
 
-  public void addRelation(String productA, String productB) {
-        adjacencyList.putIfAbsent(productA, new HashSet<>());
-        adjacencyList.putIfAbsent(productB, new HashSet<>());
+    private final int cacheCapacity; // 0: no caching
+    private final Neighbors[] clock; // cached products; null slots are free
+    private int hand;
+    private int cachedProducts;
+    private long cacheHits, cacheMisses, cacheEvictions, cacheInvalidations;
 
-        adjacencyList.get(productA).add(productB);
-        adjacencyList.get(productB).add(productA);
+    // Ranked neighbor list of one product: ids[i] has weights[i], weights descending
+    private static final class Neighbors {
+        private static final int LINEAR_SCAN = 8; // below this, finding a neighbor is a scan
+
+        final String id; // the product's own id; neighbor lists share this instance
+        String[] ids = new String[4];
+        int[] weights = new int[4];
+        int size;
+        long totalWeight; // sum of weights, for normalizing multi-hop scores
+        StringIntMap positions; // neighbor id -> index, once the list outgrows a scan
+
+        TopList cachedTop;      // first cachedTop.size() neighbors, or null
+        int cacheSlot = -1;     // index in clock while cached
+        boolean referenced;     // hit since the clock hand last passed
+
+        Neighbors(String id) {
+            this.id = id;
+        }
+
+        // Adds count co-purchases with neighbor; returns true if the edge is new
+        boolean bump(String neighbor, int count) {
+            totalWeight += count;
+            int pos = indexOf(neighbor);
+            boolean isNew = pos < 0;
+            if (isNew) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                    weights = Arrays.copyOf(weights, size * 2);
+                }
+                ids[size] = neighbor;
+                weights[size] = 0;
+                if (positions != null) positions.put(neighbor, size);
+                pos = size++;
+                if (positions == null && size > LINEAR_SCAN) indexPositions();
+                if (count == 1) {
+                    // new edges of weight 1 have the lowest possible weight, so they stay at the end
+                    weights[pos] = 1;
+                    return true;
+                }
+            }
+
+            int w = weights[pos];
+            if (count == 1) {
+                int first = firstWithWeight(w, pos);
+                if (first != pos) {
+                    String displaced = ids[first];
+                    ids[first] = neighbor;
+                    ids[pos] = displaced;
+                    if (positions != null) {
+                        positions.put(neighbor, first);
+                        positions.put(displaced, pos);
+                    }
+                }
+                weights[first] = w + 1;
+                return isNew;
+            }
+
+            // a larger step can pass several weights: shift the entries it overtakes down by one
+            int to = firstWithWeight(w + count - 1, pos);
+            if (to != pos) {
+                System.arraycopy(ids, to, ids, to + 1, pos - to);
+                System.arraycopy(weights, to, weights, to + 1, pos - to);
+                ids[to] = neighbor;
+                if (positions != null) {
+                    for (int i = to; i <= pos; i++) positions.put(ids[i], i);
+                }
+            }
+            weights[to] = w + count;
+            return isNew;
+        }
+
+        int weightOf(String neighbor) {
+            int pos = indexOf(neighbor);
+            return pos < 0 ? 0 : weights[pos];
+        }
+
+        private int indexOf(String neighbor) {
+            if (positions != null) return positions.getOrDefault(neighbor, -1);
+            for (int i = 0; i < size; i++) if (ids[i].equals(neighbor)) return i;
+            return -1;
+        }
+
+        // Lowest index in [0, pos] with weight at most w; weights are descending
+        private int firstWithWeight(int w, int pos) {
+            int lo = 0, hi = pos;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (weights[mid] > w) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        private void indexPositions() {
+            positions = new StringIntMap(size * 2);
+            for (int i = 0; i < size; i++) positions.put(ids[i], i);
+        }
+    }
+
+    // Immutable view of the first size entries of a cached array; prefixes share the array
+    private static final class TopList extends AbstractList<String> implements RandomAccess {
+        private final String[] ids;
+        private final int size;
+
+        TopList(String[] ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+
+        @Override
+        public String get(int index) {
+            Objects.checkIndex(index, size);
+            return ids[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    public RecommendationGraph() {
+        this(0);
+    }
+
+    public RecommendationGraph(int cacheCapacity) {
+        if (cacheCapacity < 0) throw new IllegalArgumentException("cacheCapacity must be >= 0");
+        this.cacheCapacity = cacheCapacity;
+        this.clock = new Neighbors[cacheCapacity];
+    }
+
+    // Records one co-purchase of the two products; a product is never related to itself
+    public void addRelation(String productA, String productB) {
+        addRelation(productA, productB, 1);
+    }
+
+    // Records count co-purchases at once, e.g. a pair aggregated over a batch of orders
+    public void addRelation(String productA, String productB, int count) {
+        if (count < 1) throw new IllegalArgumentException("count must be positive");
+        if (productA.equals(productB)) return;
+        Neighbors a = neighbors(productA);
+        Neighbors b = neighbors(productB);
+        if (a.bump(b.id, count)) edges++;
+        b.bump(a.id, count);
+        // only these two rankings changed
+        if (a.cachedTop != null) invalidate(a);
+        if (b.cachedTop != null) invalidate(b);
     }
 
+    public int weight(String productA, String productB) {
+        Neighbors n = adjacencyList.get(productA);
+        return n == null ? 0 : n.weightOf(productB);
+    }
+
+    // Best k neighbors by co-purchase count, ties in the order they reached that count.
+    // With caching on, one entry per product answers every k up to the largest one requested.
     public List<String> recommendProducts(String productId, int k) {
-        Set<String> neighbors = adjacencyList.get(productId);
-        if (neighbors == null) return Collections.emptyList();
-        List<String> list = new ArrayList<>(neighbors);
-        return list.subList(0, Math.min(k, list.size()));
+        Neighbors n = adjacencyList.get(productId);
+        if (n == null || k <= 0) return Collections.emptyList();
+        int count = Math.min(k, n.size);
+        if (cacheCapacity == 0) {
+            List<String> list = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) list.add(n.ids[i]);
+            return list;
+        }
+
+        TopList top = n.cachedTop;
+        if (top != null && top.size >= count) {
+            cacheHits++;
+            if (!n.referenced) n.referenced = true;
+            return top.size == count ? top : new TopList(top.ids, count);
+        }
+        cacheMisses++;
+        top = new TopList(Arrays.copyOf(n.ids, count), count);
+        if (n.cacheSlot < 0) claimSlot(n);
+        n.cachedTop = top;
+        return top;
+    }
+
+    // Direct neighbors plus products two hops away, for items with few relations of their own.
+    // score(c) = w(p,c) + sum over neighbors n of w(p,n) * w(n,c) / W(n), where W(n) is n's
+    // total co-purchase weight, so a hub does not drown out specific neighbors. Each hop only
+    // reads the fanout best entries of a ranked list: O(fanout^2 + k log k).
+    public List<String> recommendTwoHop(String productId, int k, int fanout) {
+        Neighbors start = adjacencyList.get(productId);
+        if (start == null || k <= 0) return Collections.emptyList();
+
+        HashMap<String, Double> scores = new HashMap<>();
+        int first = Math.min(fanout, start.size);
+        for (int i = 0; i < first; i++) {
+            scores.merge(start.ids[i], (double) start.weights[i], Double::sum);
+            Neighbors hop = adjacencyList.get(start.ids[i]);
+            int second = Math.min(fanout, hop.size);
+            for (int j = 0; j < second; j++) {
+                if (hop.ids[j].equals(productId)) continue;
+                scores.merge(hop.ids[j], (double) start.weights[i] * hop.weights[j] / hop.totalWeight, Double::sum);
+            }
+        }
+
+        // keep the k best in a min-heap
+        PriorityQueue<Map.Entry<String, Double>> best = new PriorityQueue<>(k + 1, Map.Entry.comparingByValue());
+        for (Map.Entry<String, Double> e : scores.entrySet()) {
+            best.add(e);
+            if (best.size() > k) best.poll();
+        }
+        String[] ranked = new String[best.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) ranked[i] = best.poll().getKey();
+        return Arrays.asList(ranked);
+    }
+
+    // Read-optimized CSR copy of the graph with the same ranking
+    public FrozenRecommendationGraph freeze() {
+        List<String> productIds = new ArrayList<>(adjacencyList.size());
+        List<String[]> rows = new ArrayList<>(adjacencyList.size());
+        List<int[]> rowWeights = new ArrayList<>(adjacencyList.size());
+        for (Neighbors n : adjacencyList.values()) {
+            productIds.add(n.id);
+            rows.add(Arrays.copyOf(n.ids, n.size));
+            rowWeights.add(Arrays.copyOf(n.weights, n.size));
+        }
+        return FrozenRecommendationGraph.of(productIds, rows, rowWeights);
+    }
+
+    public int productCount() {
+        return adjacencyList.size();
+    }
+
+    public long cacheHits() {
+        return cacheHits;
+    }
+
+    public long cacheMisses() {
+        return cacheMisses;
+    }
+
+    // Entries dropped to make room for another product
+    public long cacheEvictions() {
+        return cacheEvictions;
+    }
+
+    // Entries dropped because addRelation changed the product's ranking
+    public long cacheInvalidations() {
+        return cacheInvalidations;
+    }
+
+    public int cachedProducts() {
+        return cachedProducts;
+    }
+
+    public long edgeCount() {
+        return edges;
     }
 
     public void showGraph() {
         System.out.println("\nRecommendation Graph:");
-        for (String key : adjacencyList.keySet()) {
-            System.out.println("  " + key + " → " + adjacencyList.get(key));
+        for (Map.Entry<String, Neighbors> e : adjacencyList.entrySet()) {
+            Neighbors n = e.getValue();
+            StringBuilder line = new StringBuilder("  " + e.getKey() + " → [");
+            for (int i = 0; i < n.size; i++) {
+                if (i > 0) line.append(", ");
+                line.append(n.ids[i]).append(" x").append(n.weights[i]);
+            }
+            System.out.println(line.append(']'));
+        }
+        if (cacheCapacity > 0) {
+            System.out.println("  cache: " + cachedProducts + "/" + cacheCapacity + " products, " + cacheHits + " hits, "
+                    + cacheMisses + " misses, " + cacheEvictions + " evictions, " + cacheInvalidations + " invalidations");
         }
     }
+
+    private Neighbors neighbors(String productId) {
+        Neighbors n = adjacencyList.get(productId);
+        if (n == null) {
+            n = new Neighbors(productId);
+            adjacencyList.put(productId, n);
+        }
+        return n;
+    }
+
+    // Advances the hand to a free slot or to an entry not hit since the last pass, evicting it;
+    // entries that were hit lose their flag on the way. At most two passes.
+    private void claimSlot(Neighbors n) {
+        while (true) {
+            Neighbors e = clock[hand];
+            if (e == null) break;
+            if (!e.referenced) {
+                drop(e);
+                cacheEvictions++;
+                break;
+            }
+            e.referenced = false;
+            hand = (hand + 1) % cacheCapacity;
+        }
+        clock[hand] = n;
+        n.cacheSlot = hand;
+        n.referenced = false;
+        cachedProducts++;
+        hand = (hand + 1) % cacheCapacity;
+    }
+
+    private void invalidate(Neighbors n) {
+        drop(n);
+        cacheInvalidations++;
+    }
+
+    private void drop(Neighbors n) {
+        clock[n.cacheSlot] = null;
+        n.cacheSlot = -1;
+        n.cachedTop = null;
+        cachedProducts--;
+    }
 }
@@ -1,108 +1,284 @@
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 
 public class ShoppingCart {
-    private HashTable cartItems;
-    private CartActionStack undoStack;
-    private OrderQueue orderQueue;
-    public ArrayList<String> pID=new ArrayList<>();
+    static final int NOT_IN_CART = -1;
+    static final int DEFAULT_UNDO_DEPTH = 50;
+    private static final int MIN_PRUNE = 64;
+
+    private StringIntMap cartItems;
+    private CartUndoLog undoLog;
+    private OrderChannel orderQueue;
+    private Consumer<Order> orderListener;
+    private Inventory inventory;
+    private CartTotals totals; // null until a price book is set
+    private final HashMap<String, Order> openOrders = new HashMap<>(); // placed with a reservation, by id
+    private int pruneOpenAt = MIN_PRUNE;
+    private boolean verbose = true; // print a line for every edit, as the console expects
     public ShoppingCart() {
-        cartItems = new HashTable();
-        undoStack = new CartActionStack();
-        orderQueue = new OrderQueue();
+        this(new OrderQueue());
     }
 
+    public ShoppingCart(OrderChannel orderQueue) {
+        this(orderQueue, DEFAULT_UNDO_DEPTH);
+    }
+
+    // undoDepth: how many edits can be undone; older ones are forgotten
+    public ShoppingCart(OrderChannel orderQueue, int undoDepth) {
+        cartItems = new StringIntMap();
+        undoLog = new CartUndoLog(undoDepth);
+        this.orderQueue = orderQueue;
+    }
+
+    // Quantities are always positive: a stored NOT_IN_CART (-1) or 0 would read as a line
+    // that is not there, to the cart, its totals and the undo log alike
     public void addProduct(String productId, int qty) {
-        Integer prevQty = (Integer) cartItems.get(productId);
-        if (prevQty == null) prevQty = 0;
-        pID.add(productId);
-        cartItems.put(productId, prevQty + qty);
-        undoStack.push(new CartAction("ADD", productId, prevQty, prevQty + qty));
-        System.out.println("Product Added: " + productId + " Qty: " + qty);
+        requirePositive(qty);
+        int prevQty = cartItems.getOrDefault(productId, NOT_IN_CART);
+        if (qty > Integer.MAX_VALUE - Math.max(prevQty, 0)) throw new IllegalArgumentException("Quantity too large for " + productId);
+        int newQty = Math.max(prevQty, 0) + qty;
+        cartItems.put(productId, newQty);
+        undoLog.record(CartAction.Type.ADD, productId, prevQty, newQty);
+        if (totals != null) totals.change(productId, prevQty, newQty);
+        if (verbose) System.out.println("Product Added: " + productId + " Qty: " + qty);
     }
 
     public void removeProduct(String productId) {
-        Integer prevQty = (Integer) cartItems.get(productId);
-        if (prevQty == null) {
-            System.out.println("Product not found in cart.");
+        int prevQty = cartItems.getOrDefault(productId, NOT_IN_CART);
+        if (prevQty == NOT_IN_CART) {
+            if (verbose) System.out.println("Product not found in cart.");
             return;
         }
         cartItems.remove(productId);
-        undoStack.push(new CartAction("REMOVE", productId, prevQty, 0));
-        System.out.println("Product Removed: " + productId);
+        undoLog.record(CartAction.Type.REMOVE, productId, prevQty, NOT_IN_CART);
+        if (totals != null) totals.change(productId, prevQty, NOT_IN_CART);
+        if (verbose) System.out.println("Product Removed: " + productId);
     }
 
     public void updateQuantity(String productId, int newQty) {
-        Integer prevQty = (Integer) cartItems.get(productId);
-        if (prevQty == null) {
-            System.out.println("Product not found.");
+        requirePositive(newQty);
+        int prevQty = cartItems.getOrDefault(productId, NOT_IN_CART);
+        if (prevQty == NOT_IN_CART) {
+            if (verbose) System.out.println("Product not found.");
             return;
         }
         cartItems.put(productId, newQty);
-        undoStack.push(new CartAction("UPDATE", productId, prevQty, newQty));
-        System.out.println("Updated " + productId + " from " + prevQty + " to " + newQty);
+        undoLog.record(CartAction.Type.UPDATE, productId, prevQty, newQty);
+        if (totals != null) totals.change(productId, prevQty, newQty);
+        if (verbose) System.out.println("Updated " + productId + " from " + prevQty + " to " + newQty);
+    }
+
+    private static void requirePositive(int qty) {
+        if (qty <= 0) throw new IllegalArgumentException("Quantity must be positive, got " + qty);
     }
 
     public void pushCartAction(CartAction action) {
-        undoStack.push(action);
+        undoLog.record(action.type, action.productId, action.previousQuantity, action.newQuantity);
     }
 
     public void undoLastAction() {
-        if (undoStack.isEmpty()) {
-            System.out.println("No actions to undo.");
+        CartAction last = undoLog.peekUndo();
+        if (last == null) {
+            if (verbose) System.out.println("No actions to undo.");
             return;
         }
 
-        CartAction last = undoStack.pop();
+        undoLog.undo(cartItems, totals, 1);
+        int restored = Math.max(last.previousQuantity, 0);
         switch (last.type) {
-            case "ADD":
-                if (last.previousQuantity == 0) cartItems.remove(last.productId);
-                else cartItems.put(last.productId, last.previousQuantity);
-                System.out.println("Undid ADD → Restored qty: " + last.previousQuantity);
+            case ADD:
+                if (verbose) System.out.println("Undid ADD → Restored qty: " + restored);
                 break;
-            case "REMOVE":
-                cartItems.put(last.productId, last.previousQuantity);
-                System.out.println("Undid REMOVE → Restored product with qty: " + last.previousQuantity);
+            case REMOVE:
+                if (verbose) System.out.println("Undid REMOVE → Restored product with qty: " + restored);
                 break;
-            case "UPDATE":
-                cartItems.put(last.productId, last.previousQuantity);
-                System.out.println("Undid UPDATE → Restored qty: " + last.previousQuantity);
+            case UPDATE:
+                if (verbose) System.out.println("Undid UPDATE → Restored qty: " + restored);
                 break;
         }
     }
 
-    public void enqueueOrder(String orderId, boolean vipFlag) {
-        if(pID.isEmpty())return;
-        Order order=new Order(orderId,vipFlag);
-        for (int i = 0; i <pID.size() ; i++) {
-            order.orders.add(pID.get(i));
+    // Reverts the last steps edits at once; returns how many were undone
+    public int undoActions(int steps) {
+        int undone = undoLog.undo(cartItems, totals, steps);
+        if (verbose) System.out.println(undone == 0 ? "No actions to undo." : "Undid " + undone + " action(s).");
+        return undone;
+    }
+
+    // Re-applies up to steps undone edits, until a new edit clears the redo history
+    public int redoActions(int steps) {
+        int redone = undoLog.redo(cartItems, totals, steps);
+        if (verbose) System.out.println(redone == 0 ? "No actions to redo." : "Redid " + redone + " action(s).");
+        return redone;
+    }
+
+    public boolean enqueueOrder(String orderId, boolean vipFlag) {
+        return enqueueOrder(orderId, vipFlag ? OrderTier.VIP : OrderTier.STANDARD);
+    }
+
+    // Orders the cart's current lines and empties the cart. With an inventory set, the stock
+    // for every line is reserved first; if any line is short nothing is ordered and the cart
+    // stays as it is. Returns whether the order was placed.
+    public boolean enqueueOrder(String orderId, OrderTier tier) {
+        Order order = Order.of(orderId, tier, cartItems);
+        if (order.lineCount() == 0) {
+            if (verbose) System.out.println("Cart is Empty");
+            return false;
+        }
+        if (inventory != null) {
+            Order placed = openOrders.get(orderId);
+            if (placed != null && placed.reservation() == Order.RESERVED) {
+                if (verbose) System.out.println("Order ID " + orderId + " is already in use.");
+                return false;
+            }
+            if (!inventory.reserve(order)) {
+                if (verbose) printShortages(order);
+                return false;
+            }
+            openOrders.put(orderId, order);
+            if (openOrders.size() >= pruneOpenAt) pruneOpenOrders();
         }
         orderQueue.enqueue(order);
-        System.out.println("Enqueued Order: " + order );
-        pID.clear();
-        undoStack = new CartActionStack();
+        if (verbose) System.out.println("Enqueued Order: " + order + (totals != null ? " Total: " + PriceBook.format(totalCents()) : ""));
+        cartItems.clear();
+        undoLog.clear();
+        if (totals != null) totals.clear();
+        return true;
+    }
+
+    // Cancels an order this cart placed that has not been processed yet and returns its stock
+    public boolean cancelOrder(String orderId) {
+        Order order = openOrders.remove(orderId);
+        boolean cancelled = order != null && inventory.release(order);
+        if (cancelled) orderQueue.cancelled(order);
+        if (verbose) System.out.println(cancelled ? "Cancelled Order " + orderId + ", stock released." : "No open order " + orderId + " to cancel.");
+        return cancelled;
+    }
+
+    // Processes up to maxOrders queued orders as one batch, with a single log line
+    public int processOrders(int maxOrders) {
+        if (maxOrders <= 0) return 0;
+        ArrayList<Order> batch = new ArrayList<>(Math.min(maxOrders, orderQueue.size()));
+        orderQueue.drainTo(batch, maxOrders);
+        batch.removeIf(order -> !fulfil(order));
+        if (batch.isEmpty()) {
+            if (verbose) System.out.println("No orders to process.");
+            return 0;
+        }
+        if (verbose) {
+            StringBuilder ids = new StringBuilder();
+            for (Order order : batch) ids.append(ids.length() == 0 ? "" : ", ").append(order.orderId);
+            System.out.println("Processing " + batch.size() + " Orders → " + ids);
+        }
+        if (orderListener != null) {
+            for (Order order : batch) orderListener.accept(order);
+        }
+        return batch.size();
     }
 
     public void processNextOrder() {
         Order next = orderQueue.dequeue();
         if (next == null) {
-            System.out.println("No orders to process.");
+            if (verbose) System.out.println("No orders to process.");
             return;
         }
-        System.out.println("Processing Order → " + next);
+        if (!fulfil(next)) {
+            if (verbose) System.out.println("Skipped Order " + next.orderId + ": cancelled or not reserved");
+            return;
+        }
+        if (verbose) System.out.println("Processing Order → " + next);
+        if (orderListener != null) orderListener.accept(next);
+    }
+
+    public boolean isEmpty() {
+        return cartItems.isEmpty();
+    }
+
+    // Carts served to many concurrent shoppers turn this off; showCart still prints
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    // Stock to reserve orders against; set before the first order is placed. Cannot be
+    // changed while orders reserved against the current one are still open.
+    public void setInventory(Inventory inventory) {
+        if (inventory == this.inventory) return;
+        pruneOpenOrders();
+        if (!openOrders.isEmpty()) throw new IllegalStateException(openOrders.size() + " order(s) still hold reservations");
+        this.inventory = inventory;
+    }
+
+    // Ends the order's reservation before it is handed on; false if it must be skipped
+    private boolean fulfil(Order order) {
+        if (inventory == null) return true;
+        openOrders.remove(order.orderId, order);
+        return inventory.fulfil(order);
+    }
+
+    // Orders processed elsewhere (a queue shared with other carts) are never seen by
+    // fulfil above; drop them once the map has doubled since the last sweep
+    private void pruneOpenOrders() {
+        openOrders.values().removeIf(placed -> placed.reservation() != Order.RESERVED);
+        pruneOpenAt = Math.max(MIN_PRUNE, 2 * openOrders.size());
+    }
+
+    private void printShortages(Order order) {
+        for (int i = 0; i < order.lineCount(); i++) {
+            long available = inventory.available(order.productId(i));
+            if (available < 0) System.out.println("Not stocked: " + order.productId(i));
+            else if (available < order.quantity(i)) System.out.println("Out of stock: " + order.productId(i) + " (requested " + order.quantity(i) + ", available " + available + ")");
+        }
+    }
+
+    // Prices the cart from the book; totals are kept up to date with every edit from here on
+    public void setPriceBook(PriceBook book) {
+        this.totals = new CartTotals(book);
+    }
+
+    // Cart total after discounts, in cents
+    public long totalCents() {
+        return pricing().netCents(cartItems);
+    }
+
+    // Cart total at list price, in cents
+    public long listTotalCents() {
+        return pricing().listCents(cartItems);
+    }
+
+    private CartTotals pricing() {
+        if (totals == null) throw new IllegalStateException("No price book set");
+        return totals;
+    }
+
+    // Receives every order processNextOrder handles, e.g. a CoPurchaseGraphBuilder
+    public void setOrderListener(Consumer<Order> listener) {
+        this.orderListener = listener;
     }
 
     public void showCart() {
         System.out.println("\nCart Items:");
-        boolean empty = true;
-        for (int i = 0; i < cartItems.entries.length; i++) {
-            HashTable.Entry e = cartItems.entries[i];
-            while (e != null) {
-                System.out.println("  " + e.key + " → Qty: " + e.value);
-                e = e.next;
-                empty = false;
-            }
+        for (int s = cartItems.nextSlot(0); s >= 0; s = cartItems.nextSlot(s + 1)) {
+            System.out.println("  " + cartItems.keyAt(s) + " → Qty: " + cartItems.valueAt(s));
+        }
+        if (cartItems.isEmpty()) System.out.println("  (Empty)");
+        if (totals != null && !cartItems.isEmpty()) {
+            long list = totals.listCents(cartItems), net = totals.netCents(cartItems);
+            System.out.println("  Total: " + PriceBook.format(net) + (net < list ? " (saved " + PriceBook.format(list - net) + ")" : ""));
+            int unpriced = totals.unpricedLines(cartItems);
+            if (unpriced > 0) System.out.println("  " + unpriced + " item(s) without a price, counted as 0");
+        }
+    }
+
+    // Product ids currently in the cart with their quantities
+    void forEachItem(ObjIntConsumer<String> action) {
+        for (int s = cartItems.nextSlot(0); s >= 0; s = cartItems.nextSlot(s + 1)) {
+            action.accept(cartItems.keyAt(s), cartItems.valueAt(s));
         }
-        if (empty) System.out.println("  (Empty)");
     }
 
     public void showOrderQueue() {
@@ -110,98 +286,310 @@ public class ShoppingCart {
     }
 }
 
-class OrderQueue {
+class OrderQueue implements OrderChannel {
+    // How dequeue chooses between service tiers
+    enum Policy {
+        JUMP_AHEAD_ONE,  // original behaviour: one FIFO line, a VIP order is placed just before the newest order
+        STRICT_PRIORITY, // highest non-empty tier first, FIFO within a tier
+        AGING            // strict priority, but a waiting tier bypassed agingLimit times is served next
+    }
+
+    static final int DEFAULT_AGING_LIMIT = 8;
+
     private static class Node {
         Order order;
         Node next;
         Node(Order order) { this.order = order; }
     }
 
-    private Node front, rear;
+    // FIFO line for one tier (or for every order under JUMP_AHEAD_ONE)
+    private static class Lane {
+        Node front, rear;
+        Node beforeRear; // node just before rear, keeps the VIP jump O(1)
+        int size;
+        int bypassed;    // dequeues served from other lanes while this one waited
+    }
+
+    private final Policy policy;
+    private final int agingLimit;
+    private final Lane[] lanes;
+    private int size;
+
+    public OrderQueue() {
+        this(Policy.JUMP_AHEAD_ONE);
+    }
+
+    public OrderQueue(Policy policy) {
+        this(policy, DEFAULT_AGING_LIMIT);
+    }
+
+    public OrderQueue(Policy policy, int agingLimit) {
+        if (agingLimit < 1) throw new IllegalArgumentException("agingLimit must be positive");
+        this.policy = policy;
+        this.agingLimit = agingLimit;
+        int laneCount = (policy == Policy.JUMP_AHEAD_ONE) ? 1 : OrderTier.values().length;
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) lanes[i] = new Lane();
+    }
+
+    public Policy policy() {
+        return policy;
+    }
 
-    // Enqueue order with VIP priority
+    // O(1) for every policy
+    @Override
     public void enqueue(Order order) {
         Node newNode = new Node(order);
+        size++;
 
-        if (front == null) { // empty queue
-            front = rear = newNode;
-        }
-        else if (order.isVIP) {
-            // VIP orders can jump ahead by 1 position (not to the very front)
-            if (front == rear) { // only one order
-                newNode.next = front;
-                front = newNode;
-            } else {
-                Node temp = front;
-                // Move until the node before rear
-                while (temp.next != rear) {
-                    temp = temp.next;
-                }
-                // Insert before last node
-                newNode.next = rear;
-                temp.next = newNode;
-            }
+        if (policy != Policy.JUMP_AHEAD_ONE) {
+            append(lanes[order.tier.ordinal()], newNode);
+            return;
         }
-        else {
+
+        Lane line = lanes[0];
+        if (line.front == null || !order.isVIP) {
             // Normal order → end of queue
-            rear.next = newNode;
-            rear = newNode;
+            append(line, newNode);
+        } else if (line.front == line.rear) {
+            // VIP with only one order waiting goes in front of it
+            newNode.next = line.front;
+            line.front = newNode;
+            line.beforeRear = newNode;
+            line.size++;
+        } else {
+            // VIP orders can jump ahead by 1 position (not to the very front)
+            newNode.next = line.rear;
+            line.beforeRear.next = newNode;
+            line.beforeRear = newNode;
+            line.size++;
         }
     }
 
     // Process (dequeue) next order
+    @Override
     public Order dequeue() {
-        if (front == null) return null;
-        Order order = front.order;
-        front = front.next;
-        if (front == null) rear = null;
-        return order;
+        if (size == 0) return null;
+        size--;
+        return poll(lanes[nextLane()]);
     }
 
+    @Override
+    public int drainTo(Collection<? super Order> batch, int maxItems) {
+        int n = 0;
+        for (Order order; n < maxItems && (order = dequeue()) != null; n++) batch.add(order);
+        return n;
+    }
+
+    @Override
     public boolean isEmpty() {
-        return front == null;
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    int agingLimit() {
+        return agingLimit;
+    }
+
+    // Snapshot support for DurableOrderQueue: lanes are exposed in their exact internal
+    // order so a restored queue dequeues identically to the original.
+    int laneCount() {
+        return lanes.length;
+    }
+
+    int laneBypassed(int lane) {
+        return lanes[lane].bypassed;
     }
 
-    // Just to display current queue
+    void forEachInLane(int lane, Consumer<Order> action) {
+        for (Node temp = lanes[lane].front; temp != null; temp = temp.next) action.accept(temp.order);
+    }
+
+    void restoreLane(int lane, Order order, int bypassed) {
+        append(lanes[lane], new Node(order));
+        lanes[lane].bypassed = bypassed;
+        size++;
+    }
+
+    // Index of the lane the next dequeue serves; callers guarantee the queue is not empty
+    private int nextLane() {
+        int chosen = -1;
+        for (int i = lanes.length - 1; i >= 0; i--) {
+            if (lanes[i].size == 0) continue;
+            if (chosen < 0) chosen = i;
+            if (policy == Policy.AGING && lanes[i].bypassed >= agingLimit) {
+                chosen = i;
+                break;
+            }
+        }
+        if (policy == Policy.AGING) {
+            for (int i = 0; i < lanes.length; i++) {
+                if (i != chosen && lanes[i].size > 0) lanes[i].bypassed++;
+            }
+            lanes[chosen].bypassed = 0;
+        }
+        return chosen;
+    }
+
+    private static void append(Lane lane, Node node) {
+        if (lane.rear == null) {
+            lane.front = lane.rear = node;
+        } else {
+            lane.rear.next = node;
+            lane.beforeRear = lane.rear;
+            lane.rear = node;
+        }
+        lane.size++;
+    }
+
+    private static Order poll(Lane lane) {
+        Node first = lane.front;
+        lane.front = first.next;
+        lane.size--;
+        if (lane.front == null) lane.rear = null;
+        if (lane.size < 2) lane.beforeRear = null;
+        return first.order;
+    }
+
+    // Just to display current queue, highest tier first
+    @Override
     public void showQueue() {
-        Node temp = front;
         System.out.println("\nCurrent Order Queue:");
-        if (temp == null) {
+        if (size == 0) {
             System.out.println("  (Empty)");
             return;
         }
-        while (temp != null) {
-            System.out.println("  " + temp.order);
-            temp = temp.next;
+        for (int i = lanes.length - 1; i >= 0; i--) {
+            if (lanes.length > 1 && lanes[i].size > 0) {
+                System.out.println(" " + OrderTier.values()[i] + " (" + lanes[i].size + "):");
+            }
+            for (Node temp = lanes[i].front; temp != null; temp = temp.next) {
+                System.out.println("  " + temp.order);
+            }
         }
     }
 }
 
+// Service tiers in ascending priority
+enum OrderTier {
+    STANDARD,
+    VIP,
+    EXPRESS
+}
+
+ // The ordered lines are an immutable snapshot: one line per distinct product, as parallel
+ // arrays of product ids and quantities, so an order costs memory per line rather than per
+ // cart edit and the ids are the cart's own key strings, not copies. The order also carries
+ // the state of its stock reservation, if an Inventory reserved it.
  class Order {
+    private static final String[] NO_PRODUCTS = new String[0];
+    private static final int[] NO_QUANTITIES = new int[0];
+    private static final AtomicIntegerFieldUpdater<Order> RESERVATION =
+            AtomicIntegerFieldUpdater.newUpdater(Order.class, "reservation");
+
+    // Reservation states, moved forward by Inventory, and to RELEASED by DurableOrderQueue
+    // for a recovered order that had been cancelled
+    static final int NOT_RESERVED = 0;
+    static final int RESERVED = 1;
+    static final int FULFILLED = 2;
+    static final int RELEASED = 3;
+
     String orderId;
-    ArrayList<String> orders=new ArrayList<>();
     boolean isVIP;
+    OrderTier tier;
+    private final String[] productIds;
+    private final int[] quantities;
+    private volatile int reservation;
     public Order(String orderId, boolean isVIP) {
+        this(orderId, isVIP ? OrderTier.VIP : OrderTier.STANDARD);
+    }
+
+    public Order(String orderId, OrderTier tier) {
+        this(orderId, tier, NO_PRODUCTS, NO_QUANTITIES);
+    }
+
+    // Takes ownership of the arrays; the caller must not modify them afterwards
+    public Order(String orderId, OrderTier tier, String[] productIds, int[] quantities) {
+        if (productIds.length != quantities.length) throw new IllegalArgumentException("productIds and quantities differ in length");
         this.orderId = orderId;
-        this.isVIP = isVIP;
+        this.tier = tier;
+        this.isVIP = tier != OrderTier.STANDARD;
+        this.productIds = productIds;
+        this.quantities = quantities;
+    }
+
+    // Snapshot of a cart's lines in one pass over the map; lines with no quantity are left out
+    static Order of(String orderId, OrderTier tier, StringIntMap lines) {
+        String[] ids = new String[lines.size()];
+        int[] qty = new int[ids.length];
+        int n = 0;
+        for (int s = lines.nextSlot(0); s >= 0; s = lines.nextSlot(s + 1)) {
+            if (lines.valueAt(s) <= 0) continue;
+            ids[n] = lines.keyAt(s);
+            qty[n++] = lines.valueAt(s);
+        }
+        if (n < ids.length) {
+            ids = Arrays.copyOf(ids, n);
+            qty = Arrays.copyOf(qty, n);
+        }
+        return new Order(orderId, tier, ids, qty);
+    }
+
+    // Order from a list of product ids with repeats, one unit each
+    static Order ofItems(String orderId, OrderTier tier, String[] items) {
+        StringIntMap lines = new StringIntMap(items.length);
+        for (String item : items) lines.put(item, lines.getOrDefault(item, 0) + 1);
+        return of(orderId, tier, lines);
+    }
+
+    public int lineCount() {
+        return productIds.length;
+    }
+
+    public String productId(int line) {
+        return productIds[line];
+    }
+
+    public int quantity(int line) {
+        return quantities[line];
+    }
+
+    int reservation() {
+        return reservation;
+    }
+
+    boolean moveReservation(int from, int to) {
+        return RESERVATION.compareAndSet(this, from, to);
     }
 
      @Override
      public String toString() {
+         StringBuilder lines = new StringBuilder("[");
+         for (int i = 0; i < productIds.length; i++) {
+             if (i > 0) lines.append(", ");
+             lines.append(productIds[i]).append(" x").append(quantities[i]);
+         }
          return "Order: " +
                  "orderId='" + orderId + '\'' +
-                 ", orders=" + orders +
-                 ", isVIP=" + isVIP;
+                 ", lines=" + lines.append(']') +
+                 ", isVIP=" + isVIP +
+                 ", tier=" + tier;
      }
  }
 
 class CartAction {
-    String type;         // "ADD", "REMOVE", "UPDATE"
+    enum Type { ADD, REMOVE, UPDATE }
+
+    Type type;
     String productId;
-    int previousQuantity;
-    int newQuantity;
+    int previousQuantity; // ShoppingCart.NOT_IN_CART when the product was not in the cart
+    int newQuantity;      // ShoppingCart.NOT_IN_CART when the edit removed it
 
-    public CartAction(String type, String productId, int previousQuantity, int newQuantity) {
+    public CartAction(Type type, String productId, int previousQuantity, int newQuantity) {
         this.type = type;
         this.productId = productId;
         this.previousQuantity = previousQuantity;
@@ -213,50 +601,225 @@ class CartAction {
     }
 }
 
-class CartActionStack {
-    private class Node {
-        CartAction action;
-        Node next;
-        Node(CartAction action, Node next) {
-            this.action = action;
-            this.next = next;
+// Fixed-capacity undo/redo history of cart edits. Entries live in parallel arrays used as a
+// ring buffer, with the action type as a byte code. The arrays start at INITIAL_SLOTS and
+// double up to the capacity, so carts that see only a few edits stay small; after that,
+// recording an edit allocates nothing and a cart's history costs the same memory after a
+// hundred edits or ten million: once full, the oldest edit is overwritten. Entries past the
+// cursor are the redo history; recording a new edit discards them.
+class CartUndoLog {
+    private static final CartAction.Type[] TYPES = CartAction.Type.values();
+    private static final int INITIAL_SLOTS = 8;
+
+    private final int capacity;
+    private byte[] types;
+    private String[] productIds;
+    private int[] previousQuantities;
+    private int[] newQuantities;
+    private int oldest;    // slot of the oldest entry
+    private int undoable;  // entries before the cursor
+    private int redoable;  // entries after it
+    private long forgotten; // edits overwritten because the log was full
+
+    public CartUndoLog(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        int slots = Math.min(capacity, INITIAL_SLOTS);
+        types = new byte[slots];
+        productIds = new String[slots];
+        previousQuantities = new int[slots];
+        newQuantities = new int[slots];
+    }
+
+    public void record(CartAction.Type type, String productId, int previousQuantity, int newQuantity) {
+        for (int i = 0; i < redoable; i++) productIds[slot(undoable + i)] = null;
+        redoable = 0;
+        if (undoable == capacity) {
+            oldest = (oldest + 1) % capacity;
+            undoable--;
+            forgotten++;
+        } else if (undoable == types.length) {
+            grow(Math.min(capacity, 2 * types.length));
         }
+        int s = slot(undoable++);
+        types[s] = (byte) type.ordinal();
+        productIds[s] = productId;
+        previousQuantities[s] = previousQuantity;
+        newQuantities[s] = newQuantity;
     }
 
-    private Node top;
-    private int size;
+    // Restores the quantities from before the last steps edits, newest first
+    public int undo(StringIntMap cart, int steps) {
+        return undo(cart, null, steps);
+    }
 
-    public void push(CartAction action) {
-        top = new Node(action, top);
-        size++;
+    // As undo, moving the cart's totals (when not null) along with every step
+    public int undo(StringIntMap cart, CartTotals totals, int steps) {
+        int n = Math.min(steps, undoable);
+        for (int i = 0; i < n; i++) {
+            int s = slot(--undoable);
+            apply(cart, productIds[s], previousQuantities[s]);
+            if (totals != null) totals.change(productIds[s], newQuantities[s], previousQuantities[s]);
+        }
+        redoable += n;
+        return n;
     }
 
-    public CartAction pop() {
-        if (isEmpty()) throw new IllegalStateException("Stack Empty");
-        CartAction temp = top.action;
-        top = top.next;
-        size--;
-        return temp;
+    // Re-applies up to steps undone edits, oldest first
+    public int redo(StringIntMap cart, int steps) {
+        return redo(cart, null, steps);
     }
 
-    public boolean isEmpty() {
-        return size == 0;
+    public int redo(StringIntMap cart, CartTotals totals, int steps) {
+        int n = Math.min(steps, redoable);
+        for (int i = 0; i < n; i++) {
+            int s = slot(undoable++);
+            apply(cart, productIds[s], newQuantities[s]);
+            if (totals != null) totals.change(productIds[s], previousQuantities[s], newQuantities[s]);
+        }
+        redoable -= n;
+        return n;
     }
 
-    public int size() {
-        return size;
+    // Edit the next undo would revert, or null
+    public CartAction peekUndo() {
+        if (undoable == 0) return null;
+        int s = slot(undoable - 1);
+        return new CartAction(TYPES[types[s]], productIds[s], previousQuantities[s], newQuantities[s]);
+    }
+
+    // Forgets every entry, keeping the arrays
+    public void clear() {
+        for (int i = 0; i < undoable + redoable; i++) productIds[slot(i)] = null;
+        oldest = undoable = redoable = 0;
+    }
+
+    public int undoSize() {
+        return undoable;
+    }
+
+    public int redoSize() {
+        return redoable;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long forgotten() {
+        return forgotten;
     }
 
-    public CartAction peek() {
-        if (isEmpty()) throw new IllegalStateException("Stack Empty");
-        return top.action;
+    // Copies the entries, oldest first, into arrays of the given size
+    private void grow(int slots) {
+        byte[] t = new byte[slots];
+        String[] p = new String[slots];
+        int[] prev = new int[slots];
+        int[] next = new int[slots];
+        int n = undoable + redoable;
+        for (int i = 0; i < n; i++) {
+            int s = slot(i);
+            t[i] = types[s];
+            p[i] = productIds[s];
+            prev[i] = previousQuantities[s];
+            next[i] = newQuantities[s];
+        }
+        types = t;
+        productIds = p;
+        previousQuantities = prev;
+        newQuantities = next;
+        oldest = 0;
+    }
+
+    private int slot(int index) {
+        int s = oldest + index;
+        return s < types.length ? s : s - types.length;
     }
 
-    public void undoLastKActions(int k) {
-        for (int i = 0; i < k && !isEmpty(); i++) {
-            CartAction last = pop();
-            // same undo logic as in undoLastAction()
+    private static void apply(StringIntMap cart, String productId, int quantity) {
+        if (quantity == ShoppingCart.NOT_IN_CART) cart.remove(productId);
+        else cart.put(productId, quantity);
+    }
+}
+
+// Running totals of one cart in cents, list and after discount, kept in step with its edits:
+// an edit moves them by (new - old quantity) x unit price, one price lookup, so a B2B cart of
+// thousands of lines costs the same to keep priced as a cart of one. Quantities of 0 or
+// less count as nothing, as in Order.of; lines without a price count as 0.
+// When the book has been repriced since the cart was last priced, the next read reprices the
+// whole cart: it resolves every line into price and quantity columns and sums them with
+// PriceBook.sumOfProducts.
+class CartTotals {
+    private final PriceBook book;
+    private PriceBook.Prices pricedAt; // prices the totals are at; null: reprice at the next read
+    private long listCents;
+    private long netCents;
+    private int unpricedLines;
+
+    CartTotals(PriceBook book) {
+        this.book = book;
+    }
+
+    // The cart's quantity of productId went from prevQty to newQty (NOT_IN_CART when absent)
+    void change(String productId, int prevQty, int newQty) {
+        PriceBook.Prices p = book.current();
+        if (p != pricedAt) {
+            pricedAt = null;
+            return;
+        }
+        long delta = (long) Math.max(newQty, 0) - Math.max(prevQty, 0);
+        int row = p.rows.getOrDefault(productId, -1);
+        if (row < 0) {
+            unpricedLines += (newQty > 0 ? 1 : 0) - (prevQty > 0 ? 1 : 0);
+            return;
+        }
+        listCents += delta * p.listCents[row];
+        netCents += delta * p.unitCents[row];
+    }
+
+    long listCents(StringIntMap cart) {
+        if (pricedAt != book.current()) reprice(cart);
+        return listCents;
+    }
+
+    long netCents(StringIntMap cart) {
+        if (pricedAt != book.current()) reprice(cart);
+        return netCents;
+    }
+
+    int unpricedLines(StringIntMap cart) {
+        if (pricedAt != book.current()) reprice(cart);
+        return unpricedLines;
+    }
+
+    // The cart was emptied
+    void clear() {
+        listCents = netCents = 0;
+        unpricedLines = 0;
+        pricedAt = book.current();
+    }
+
+    private void reprice(StringIntMap cart) {
+        PriceBook.Prices p = book.current();
+        int n = cart.size();
+        long[] list = new long[n];
+        long[] unit = new long[n];
+        long[] qty = new long[n];
+        int i = 0, unpriced = 0;
+        for (int s = cart.nextSlot(0); s >= 0; s = cart.nextSlot(s + 1), i++) {
+            qty[i] = Math.max(cart.valueAt(s), 0);
+            int row = p.rows.getOrDefault(cart.keyAt(s), -1);
+            if (row >= 0) {
+                list[i] = p.listCents[row];
+                unit[i] = p.unitCents[row];
+            } else if (qty[i] > 0) {
+                unpriced++;
+            }
         }
+        listCents = PriceBook.sumOfProducts(list, qty, n);
+        netCents = PriceBook.sumOfProducts(unit, qty, n);
+        unpricedLines = unpriced;
+        pricedAt = p;
     }
 }
 
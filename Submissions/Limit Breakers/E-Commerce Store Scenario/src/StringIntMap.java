@@ -0,0 +1,152 @@
+import java.util.Arrays;
+
+// Open-addressing String -> int map. Keys, cached key hashes and primitive values live in
+// three parallel arrays: no Entry objects, no boxing. Linear probing with backward-shift
+// deletion, so there are no tombstones and lookups never degrade after removals.
+class StringIntMap {
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private String[] keys;
+    private int[] hashes;
+    private int[] values;
+    private int size;
+    private int resizeAt;
+
+    public StringIntMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expectedSize) capacity <<= 1;
+        allocate(capacity);
+    }
+
+    public StringIntMap() {
+        this(16);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(String key) {
+        return slotOf(key) >= 0;
+    }
+
+    public int getOrDefault(String key, int defaultValue) {
+        int slot = slotOf(key);
+        return slot >= 0 ? values[slot] : defaultValue;
+    }
+
+    public void put(String key, int value) {
+        int h = hash(key);
+        int mask = keys.length - 1;
+        int slot = h & mask;
+        while (keys[slot] != null) {
+            if (hashes[slot] == h && keys[slot].equals(key)) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        hashes[slot] = h;
+        values[slot] = value;
+        if (++size > resizeAt) resize();
+    }
+
+    public boolean remove(String key) {
+        int slot = slotOf(key);
+        if (slot < 0) return false;
+        deleteSlot(slot);
+        return true;
+    }
+
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    // Slot-based iteration without allocation:
+    //   for (int s = map.nextSlot(0); s >= 0; s = map.nextSlot(s + 1)) map.keyAt(s) ...
+    public int nextSlot(int from) {
+        for (int i = from; i < keys.length; i++) {
+            if (keys[i] != null) return i;
+        }
+        return -1;
+    }
+
+    public String keyAt(int slot) {
+        return keys[slot];
+    }
+
+    public int valueAt(int slot) {
+        return values[slot];
+    }
+
+    private int slotOf(String key) {
+        int h = hash(key);
+        int mask = keys.length - 1;
+        for (int slot = h & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            if (hashes[slot] == h && keys[slot].equals(key)) return slot;
+        }
+        return -1;
+    }
+
+    // Backward-shift: pull later members of the probe run into the hole so every key stays
+    // reachable from its home slot.
+    private void deleteSlot(int hole) {
+        int mask = keys.length - 1;
+        int slot = hole;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (keys[slot] == null) break;
+            int home = hashes[slot] & mask;
+            boolean movable = (hole <= slot) ? (home <= hole || home > slot) : (home <= hole && home > slot);
+            if (movable) {
+                keys[hole] = keys[slot];
+                hashes[hole] = hashes[slot];
+                values[hole] = values[slot];
+                hole = slot;
+            }
+        }
+        keys[hole] = null;
+        size--;
+    }
+
+    // Entries are placed directly using the cached hashes; no equals() calls and no
+    // load-factor checks while moving.
+    private void resize() {
+        String[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) continue;
+            int slot = oldHashes[i] & mask;
+            while (keys[slot] != null) slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            hashes[slot] = oldHashes[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        values = new int[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    // String caches its own hashCode; ids like "P100".."P999" have clustered hash codes, so
+    // mix all bits into the low ones before masking (murmur3 finalizer steps)
+    private static int hash(String key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        return h ^ (h >>> 13);
+    }
+}